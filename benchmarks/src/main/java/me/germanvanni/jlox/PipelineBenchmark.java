@@ -0,0 +1,100 @@
+package me.germanvanni.jlox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//each stage of the pipeline on its own, over the programs in resources/corpus. every stage starts from
+//the output of the previous ones, prepared once in setup. run with -prof gc to see allocation rates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"recursion", "loops", "strings", "classes", "dispatch"})
+    public String program;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private Program compiled;
+    private final PrintStream discard = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    @Setup
+    public void setup() throws IOException {
+        source = read("/corpus/" + program + ".lox");
+        tokens = new Scanner(source, reporter()).scanTokens();
+        statements = new Parser(tokens, reporter()).parse();
+        compiled = Program.compile(source);
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(source, reporter()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter()).parse();
+    }
+
+    @Benchmark
+    public Map<Expr, Integer> resolve() {
+        Map<Expr, Integer> locals = new HashMap<>();
+        new Resolver(locals, reporter()).resolve(statements);
+        return locals;
+    }
+
+    @Benchmark
+    public int interpret() {
+        int exitCode = compiled.run(discard, discard);
+        if(exitCode != 0) throw new IllegalStateException(program + " failed with exit code " + exitCode);
+        return exitCode;
+    }
+
+    private ErrorReporter reporter() {
+        return new ErrorReporter(discard, discard);
+    }
+
+    private static String read(String resource) throws IOException {
+        try(InputStream in = PipelineBenchmark.class.getResourceAsStream(resource)){
+            if(in == null) throw new IOException("Missing benchmark program " + resource);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) > 0){
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package me.germanvanni.jlox;
+
+import java.util.List;
+
+//array(size), push(array, value), pop(array) and len(array), which also measures strings and counts
+//the entries of a map. elements are read and written with a[i]
+final class ArrayNatives {
+    private ArrayNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("array", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        Object size = arguments.get(0);
+                        if(!(size instanceof Double) || (double) size < 0 || (double) size != Math.floor((double) size)){
+                            throw new NativeError("array() expects a size that is a whole number, at least 0.");
+                        }
+                        //starts out filled with zeros
+                        interpreter.allocate(Budget.arrayBytes + Budget.elementBytes * (long) (double) size);
+                        return new LoxArray((int) (double) size);
+                    }
+                },
+                new NativeFunction("push", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = array(arguments.get(0), "push");
+                        interpreter.allocate(Budget.elementBytes);
+                        array.push(arguments.get(1));
+                        return null;
+                    }
+                },
+                new NativeFunction("pop", 1) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = array(arguments.get(0), "pop");
+                        if(array.size() == 0) throw new NativeError("Can't pop from an empty array.");
+                        return array.pop();
+                    }
+                },
+                new NativeFunction("len", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        Object value = arguments.get(0);
+                        if(value instanceof String) return (double) ((String) value).length();
+                        if(value instanceof Rope) return (double) ((Rope) value).length();
+                        if(value instanceof LoxMap) return (double) MapNatives.map(value, "len").size();
+                        if(!(value instanceof LoxArray)) throw new NativeError("len() expects an array, a map or a string.");
+                        return (double) array(value, "len").size();
+                    }
+                });
+    }
+
+    static LoxArray array(Object value, String function){
+        if(!(value instanceof LoxArray)) throw new NativeError(function + "() expects an array.");
+        LoxArray array = (LoxArray) value;
+        array.checkOwner();
+        return array;
+    }
+}
@@ -0,0 +1,106 @@
+package me.germanvanni.jlox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+//nanoClock() and bench(name, fn, iterations).
+//
+//bench calls fn iterations times to warm it up, then times iterations more calls one by one and prints
+//the min, median and p99 of them with what each call allocated: Lox objects as the memory limit counts
+//them and, on JVMs that can tell, every byte the thread allocated. it returns the median in nanoseconds
+final class BenchNatives {
+    //com.sun.management.ThreadMXBean when the JVM has one, null otherwise
+    private static final com.sun.management.ThreadMXBean threads = threadAllocation();
+    //nanoClock() counts from here, so its readings stay small enough for a double to hold to the nanosecond
+    private static final long origin = System.nanoTime();
+
+    private BenchNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("nanoClock", 0, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        //only differences between two readings mean something
+                        return (double) (System.nanoTime() - origin);
+                    }
+                },
+                new NativeFunction("bench", 3) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        if(!Rope.isString(arguments.get(0))) throw new NativeError("bench() expects a name.");
+                        Object callee = arguments.get(1);
+                        if(!(callee instanceof LoxCallable) || ((LoxCallable) callee).arity() != 0){
+                            throw new NativeError("bench() expects a function without parameters.");
+                        }
+                        Object iterations = arguments.get(2);
+                        if(!(iterations instanceof Double) || (double) iterations < 1
+                                || (double) iterations != Math.floor((double) iterations) || (double) iterations > Integer.MAX_VALUE){
+                            throw new NativeError("bench() expects a whole number of iterations, at least 1.");
+                        }
+                        return bench(interpreter, arguments.get(0).toString(), (LoxCallable) callee, (int) (double) iterations);
+                    }
+                });
+    }
+
+    //the calls go through the interpreter like any call in the script, so limits, listeners and the profiler
+    //apply to them. the times are charged to the run like an array of as many numbers
+    private static double bench(Interpreter interpreter, String name, LoxCallable callee, int iterations){
+        interpreter.allocate(Budget.arrayBytes + Budget.elementBytes * (long) iterations);
+        List<Object> none = Collections.emptyList();
+        for(int i = 0; i < iterations; i++){
+            interpreter.callFromNative(callee, none);
+        }
+
+        long[] times = new long[iterations];
+        long loxBefore = interpreter.allocatedBytes();
+        long jvmBefore = jvmAllocatedBytes();
+        for(int i = 0; i < iterations; i++){
+            long start = System.nanoTime();
+            interpreter.callFromNative(callee, none);
+            times[i] = System.nanoTime() - start;
+        }
+        long loxAllocated = interpreter.allocatedBytes() - loxBefore;
+        long jvmAllocated = jvmAllocatedBytes() - jvmBefore;
+
+        Arrays.sort(times);
+        long median = times[(iterations - 1) / 2];
+        long p99 = times[(int) Math.ceil(iterations * 0.99) - 1];
+        String report = name + ": " + iterations + " runs, min " + duration(times[0]) + ", median " + duration(median)
+                + ", p99 " + duration(p99) + ", " + loxAllocated / iterations + " B/run of Lox objects";
+        if(jvmBefore >= 0) report += ", " + jvmAllocated / iterations + " B/run in the JVM";
+        interpreter.out.println(report);
+        return (double) median;
+    }
+
+    private static String duration(long nanos){
+        if(nanos < 1_000) return nanos + " ns";
+        if(nanos < 1_000_000) return String.format(Locale.ROOT, "%.2f us", nanos / 1e3);
+        if(nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+    }
+
+    //bytes the current thread allocated so far, -1 when the JVM doesn't tell
+    private static long jvmAllocatedBytes(){
+        if(threads == null) return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadAllocation(){
+        try{
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if(!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if(!threads.isThreadAllocatedMemorySupported()) return null;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        } catch (LinkageError | UnsupportedOperationException e){
+            return null;
+        }
+    }
+}
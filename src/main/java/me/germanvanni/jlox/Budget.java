@@ -0,0 +1,73 @@
+package me.germanvanni.jlox;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//what is left of the Limits of one run, shared by every task of it. interpreters take fuel and memory
+//in chunks so the shared counters are only touched once per chunk, and the deadline is checked at the
+//same time. a run may stop up to a memory chunk per thread early.
+//tasks waiting on a channel or another task wait until the deadline at most
+final class Budget {
+    private static final long chunk = 1024;
+    static final long memoryChunk = 64 * 1024;
+
+    //about what the objects a script sees take on a 64-bit JVM with compressed pointers, headers and the
+    //maps behind them included. strings take 2 bytes per character on top
+    static final long environmentBytes = 160;
+    static final long variableBytes = 32;
+    static final long closureBytes = 32;
+    static final long instanceBytes = 120;
+    static final long fieldBytes = 32;
+    static final long stringBytes = 40;
+    static final long ropeBytes = 40;
+    static final long arrayBytes = 96;
+    static final long elementBytes = 8;
+    static final long mapBytes = 280;
+    static final long entryBytes = 24;
+
+    private final AtomicLong fuel;
+    private final long deadline;
+    final int maxCallDepth;
+    final long maxMemory;
+    private final AtomicLong allocated = new AtomicLong();
+
+    Budget(Limits limits){
+        this.fuel = limits.fuel == Long.MAX_VALUE ? null : new AtomicLong(limits.fuel);
+        this.deadline = limits.timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + limits.timeoutNanos;
+        this.maxCallDepth = limits.maxCallDepth;
+        this.maxMemory = limits.maxMemory;
+    }
+
+    //returns how many steps the caller may take before asking again
+    long take(int line){
+        if(deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) throw pastDeadline(line);
+        if(fuel == null) return chunk;
+
+        long before = fuel.getAndAdd(-chunk);
+        if(before <= 0) throw new LimitExceededError(Limits.Kind.FUEL, line, "Execution ran out of fuel.");
+        return Math.min(before, chunk);
+    }
+
+    //books bytes more for the run, false when that would take it over its memory limit
+    boolean reserve(long bytes){
+        if(allocated.addAndGet(bytes) <= maxMemory) return true;
+        allocated.addAndGet(-bytes);
+        return false;
+    }
+
+    //what the run allocated so far, give or take the chunks its interpreters haven't used up
+    long allocated(){
+        return allocated.get();
+    }
+
+    //how long a task may still wait on another, Long.MAX_VALUE without a deadline
+    long nanosLeft(int line){
+        if(deadline == Long.MAX_VALUE) return Long.MAX_VALUE;
+        long left = deadline - System.nanoTime();
+        if(left <= 0) throw pastDeadline(line);
+        return left;
+    }
+
+    LimitExceededError pastDeadline(int line){
+        return new LimitExceededError(Limits.Kind.DEADLINE, line, "Execution ran past its deadline.");
+    }
+}
@@ -0,0 +1,232 @@
+package me.germanvanni.jlox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//map(array, fn), filter(array, fn), reduce(array, fn, initial) and forEach(array, fn).
+//
+//arrays of at least parallelThreshold elements are split across a fork-join pool when the callback is pure
+//(see Purity). the caller waits for the workers, which may read what it owns meanwhile. a parallel reduce
+//combines partial results in order, so it needs fn to be associative
+final class BulkNatives {
+    static final int parallelThreshold = 4096;
+    //its own pool, so a worker joining a chunk never steals a spawned task while reading for someone else
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private BulkNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("map", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = ArrayNatives.array(arguments.get(0), "map");
+                        LoxCallable callee = callback(arguments.get(1), 1, "map");
+                        Object[] results = apply(interpreter, array, callee);
+
+                        interpreter.allocate(Budget.arrayBytes + Budget.elementBytes * results.length);
+                        LoxArray mapped = new LoxArray(0);
+                        for(Object result : results){
+                            mapped.push(result);
+                        }
+                        return mapped;
+                    }
+                },
+                new NativeFunction("filter", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = ArrayNatives.array(arguments.get(0), "filter");
+                        LoxCallable callee = callback(arguments.get(1), 1, "filter");
+                        Object[] results = apply(interpreter, array, callee);
+
+                        LoxArray kept = new LoxArray(0);
+                        for(int i = 0; i < results.length; i++){
+                            if(Interpreter.isTruthy(results[i])) kept.push(array.get(i));
+                        }
+                        interpreter.allocate(Budget.arrayBytes + Budget.elementBytes * kept.size());
+                        return kept;
+                    }
+                },
+                new NativeFunction("reduce", 3) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = ArrayNatives.array(arguments.get(0), "reduce");
+                        LoxCallable callee = callback(arguments.get(1), 2, "reduce");
+                        return reduce(interpreter, array, callee, arguments.get(2));
+                    }
+                },
+                new NativeFunction("forEach", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxArray array = ArrayNatives.array(arguments.get(0), "forEach");
+                        apply(interpreter, array, callback(arguments.get(1), 1, "forEach"));
+                        return null;
+                    }
+                });
+    }
+
+    private static LoxCallable callback(Object value, int arity, String function){
+        if(!(value instanceof LoxCallable) || ((LoxCallable) value).arity() != arity){
+            throw new NativeError(function + "() expects a function with " + arity
+                    + (arity == 1 ? " parameter." : " parameters."));
+        }
+        return (LoxCallable) value;
+    }
+
+    private static boolean runsInParallel(Interpreter interpreter, LoxArray array, LoxCallable callee){
+        return array.size() >= parallelThreshold && pool.getParallelism() > 1
+                && Purity.isPure(interpreter, callee);
+    }
+
+    //calls callee on every element, returning the results by index
+    private static Object[] apply(Interpreter interpreter, LoxArray array, LoxCallable callee){
+        Object[] results = new Object[array.size()];
+        if(runsInParallel(interpreter, array, callee)){
+            pool.invoke(new Chunk(interpreter, Thread.currentThread(), array, callee, results, 0, array.size()));
+            for(Object result : results){
+                Owned.claim(result);
+            }
+            return results;
+        }
+
+        //the callback may change the array, so it is read again on every step
+        for(int i = 0; i < array.size() && i < results.length; i++){
+            results[i] = interpreter.callFromNative(callee, Arrays.asList(array.get(i)));
+        }
+        return results;
+    }
+
+    private static Object reduce(Interpreter interpreter, LoxArray array, LoxCallable callee, Object initial){
+        if(!runsInParallel(interpreter, array, callee)){
+            Object accumulator = initial;
+            for(int i = 0; i < array.size(); i++){
+                accumulator = interpreter.callFromNative(callee, Arrays.asList(accumulator, array.get(i)));
+            }
+            return accumulator;
+        }
+
+        List<Object> partials = pool.invoke(new Fold(interpreter, Thread.currentThread(), array, callee, 0, array.size()));
+        Object accumulator = initial;
+        for(Object partial : partials){
+            Owned.claim(partial);
+            accumulator = interpreter.callFromNative(callee, Arrays.asList(accumulator, partial));
+        }
+        return accumulator;
+    }
+
+    private static int chunkSize(int size){
+        return Math.max(1024, size / (pool.getParallelism() * 4));
+    }
+
+    //a range of elements run on a pool worker with its own interpreter, reading for the waiting caller
+    private abstract static class Range<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+        final Interpreter parent;
+        final Thread caller;
+        final LoxArray array;
+        final LoxCallable callee;
+        final int from;
+        final int to;
+
+        Range(Interpreter parent, Thread caller, LoxArray array, LoxCallable callee, int from, int to){
+            this.parent = parent;
+            this.caller = caller;
+            this.array = array;
+            this.callee = callee;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if(to - from > chunkSize(array.size())){
+                int middle = (from + to) >>> 1;
+                Range<T> left = split(from, middle);
+                Range<T> right = split(middle, to);
+                left.fork();
+                T rightResult = right.compute();
+                return join(left.join(), rightResult);
+            }
+
+            Thread previous = Owned.borrowFrom(caller);
+            Interpreter worker = parent.fork();
+            try{
+                return run(worker);
+            } finally {
+                worker.returnAllowance();
+                Owned.restore(previous);
+            }
+        }
+
+        abstract Range<T> split(int from, int to);
+
+        abstract T join(T left, T right);
+
+        abstract T run(Interpreter worker);
+    }
+
+    private static class Chunk extends Range<Void> {
+        private static final long serialVersionUID = 1L;
+        private final Object[] results;
+
+        Chunk(Interpreter parent, Thread caller, LoxArray array, LoxCallable callee, Object[] results, int from, int to){
+            super(parent, caller, array, callee, from, to);
+            this.results = results;
+        }
+
+        @Override
+        Range<Void> split(int from, int to) {
+            return new Chunk(parent, caller, array, callee, results, from, to);
+        }
+
+        @Override
+        Void join(Void left, Void right) {
+            return null;
+        }
+
+        @Override
+        Void run(Interpreter worker) {
+            for(int i = from; i < to; i++){
+                results[i] = worker.callFromNative(callee, Arrays.asList(array.get(i)));
+                Owned.release(results[i]);
+            }
+            return null;
+        }
+    }
+
+    private static class Fold extends Range<List<Object>> {
+        private static final long serialVersionUID = 1L;
+        Fold(Interpreter parent, Thread caller, LoxArray array, LoxCallable callee, int from, int to){
+            super(parent, caller, array, callee, from, to);
+        }
+
+        @Override
+        Range<List<Object>> split(int from, int to) {
+            return new Fold(parent, caller, array, callee, from, to);
+        }
+
+        @Override
+        List<Object> join(List<Object> left, List<Object> right) {
+            left.addAll(right);
+            return left;
+        }
+
+        //folds the range from its first element, the caller folds the partial results into initial
+        @Override
+        List<Object> run(Interpreter worker) {
+            Object accumulator = array.get(from);
+            for(int i = from + 1; i < to; i++){
+                accumulator = worker.callFromNative(callee, Arrays.asList(accumulator, array.get(i)));
+            }
+            Owned.release(accumulator);
+
+            List<Object> partials = new ArrayList<>();
+            partials.add(accumulator);
+            return partials;
+        }
+    }
+}
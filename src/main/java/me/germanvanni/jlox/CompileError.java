@@ -0,0 +1,10 @@
+package me.germanvanni.jlox;
+
+//thrown by Program.compile, the message holds every error that was reported
+public class CompileError extends RuntimeException{
+    private static final long serialVersionUID = 1L;
+
+    CompileError(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,326 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//lox --coverage report.txt script.lox: counts how often every statement runs and which way every if,
+//and and or went. before the run each node is given the index of its counters, so counting is a lookup
+//and an array increment. the program may be run elsewhere at the same time, so the indices are kept here
+//rather than in the nodes: a statement has one counter, an if two more right after it (then, else) and a
+//logical operator two (right side evaluated, short circuited). tasks count without synchronizing and may
+//lose a few hits
+class Coverage implements ExecutionListener, Stmt.Visitor<Void>, Expr.Visitor<Void> {
+    private static final int statementKind = 0;
+    private static final int ifKind = 1;
+    private static final int logicalKind = 2;
+
+    private long[] counts;
+    //line and kind of the node owning each first slot, the others hold 0
+    private int[] lines = new int[64];
+    private byte[] kinds = new byte[64];
+    //"and" or "or" for the first slot of each logical operator
+    private String[] logicalNames = new String[64];
+    private int slots = 0;
+    //the first slot of each statement and logical operator
+    private final Map<Object, Integer> slotOf = new IdentityHashMap<>();
+
+    Coverage(List<Stmt> statements){
+        assign(statements);
+        counts = new long[slots];
+    }
+
+    //returns the exit code runFile would use
+    static int run(String source, Path report) throws IOException{
+        ErrorReporter reporter = new ErrorReporter(System.out, System.err);
+        Program program = Program.compile(source, reporter);
+        if(program == null) return 65;
+
+        Coverage coverage = new Coverage(program.statements);
+        Interpreter interpreter = new InstrumentedInterpreter(reporter,
+                new Output(System.out, Charset.defaultCharset(), System.console() != null), program.locals, coverage);
+        try{
+            interpreter.interpretScript(program.statements);
+        } catch (StackOverflowError e){
+            interpreter.out.flush();
+            System.err.println("Stack overflow.");
+            reporter.hadRuntimeError = true;
+        } finally {
+            interpreter.out.flush();
+            coverage.write(report);
+            coverage.printSummary(System.err);
+        }
+        return reporter.hadRuntimeError ? 70 : 0;
+    }
+
+    @Override
+    public void statement(Stmt statement) {
+        Integer slot = slotOf.get(statement);
+        if(slot != null) counts[slot]++;
+    }
+
+    @Override
+    public void branch(Stmt.If stmt, boolean taken) {
+        Integer slot = slotOf.get(stmt);
+        if(slot != null) counts[slot + (taken ? 1 : 2)]++;
+    }
+
+    @Override
+    public void branch(Expr.Logical expr, boolean shortCircuits) {
+        Integer slot = slotOf.get(expr);
+        if(slot != null) counts[slot + (shortCircuits ? 1 : 0)]++;
+    }
+
+    //one line per source line holding a statement: the line, how often its statements ran (the most of
+    //them) and, if it has conditions, "if:then/else", "and:right/short" or "or:right/short" for each
+    void write(Path path) throws IOException{
+        try(Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)){
+            writer.write("# line hits [if:then/else | and:right/short | or:right/short ...]\n");
+            for(Map.Entry<Integer, StringBuilder> line : byLine().entrySet()){
+                writer.write(line.getKey() + " " + line.getValue() + "\n");
+            }
+        }
+    }
+
+    private Map<Integer, StringBuilder> byLine(){
+        Map<Integer, long[]> hits = new TreeMap<>();
+        Map<Integer, StringBuilder> branches = new TreeMap<>();
+        for(int slot = 0; slot < slots; slot++){
+            if(lines[slot] == 0) continue;
+            if(kinds[slot] != logicalKind){
+                long[] max = hits.computeIfAbsent(lines[slot], line -> new long[1]);
+                max[0] = Math.max(max[0], counts[slot]);
+            }
+            if(kinds[slot] != statementKind){
+                int first = branches(slot);
+                String name = kinds[slot] == ifKind ? "if" : logicalNames[slot];
+                branches.computeIfAbsent(lines[slot], line -> new StringBuilder())
+                        .append(' ').append(name).append(':').append(counts[first]).append('/').append(counts[first + 1]);
+            }
+        }
+
+        Map<Integer, StringBuilder> report = new TreeMap<>();
+        for(Map.Entry<Integer, long[]> line : hits.entrySet()){
+            report.put(line.getKey(), new StringBuilder().append(line.getValue()[0]));
+        }
+        for(Map.Entry<Integer, StringBuilder> line : branches.entrySet()){
+            report.computeIfAbsent(line.getKey(), key -> new StringBuilder("0")).append(line.getValue());
+        }
+        return report;
+    }
+
+    void printSummary(PrintStream out){
+        int lineCount = 0;
+        int linesHit = 0;
+        for(Map.Entry<Integer, StringBuilder> line : byLine().entrySet()){
+            lineCount++;
+            if(!line.getValue().toString().startsWith("0")) linesHit++;
+        }
+        int branchCount = 0;
+        int branchesHit = 0;
+        for(int slot = 0; slot < slots; slot++){
+            if(lines[slot] == 0 || kinds[slot] == statementKind) continue;
+            branchCount += 2;
+            if(counts[branches(slot)] > 0) branchesHit++;
+            if(counts[branches(slot) + 1] > 0) branchesHit++;
+        }
+        out.println("Coverage: " + linesHit + "/" + lineCount + " lines, " + branchesHit + "/" + branchCount + " branches.");
+    }
+
+    //the first of the two branch counters of an if or logical operator
+    private int branches(int slot){
+        return kinds[slot] == ifKind ? slot + 1 : slot;
+    }
+
+    private int allocate(int line, int kind, int size){
+        if(slots + size > lines.length){
+            int capacity = Math.max(lines.length * 2, slots + size);
+            lines = Arrays.copyOf(lines, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            logicalNames = Arrays.copyOf(logicalNames, capacity);
+        }
+        int slot = slots;
+        lines[slot] = line;
+        kinds[slot] = (byte) kind;
+        slots += size;
+        return slot;
+    }
+
+    private void assign(List<Stmt> statements){
+        for(Stmt statement : statements){
+            assign(statement);
+        }
+    }
+
+    private void assign(Stmt statement){
+        if(statement == null) return;
+        if(statement instanceof Stmt.If) slotOf.put(statement, allocate(statement.line, ifKind, 3));
+        else slotOf.put(statement, allocate(statement.line, statementKind, 1));
+        statement.accept(this);
+    }
+
+    private void assign(Expr expr){
+        if(expr != null) expr.accept(this);
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        assign(stmt.condition);
+        assign(stmt.thenBranch);
+        assign(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        assign(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        //methods are not statements that run, only their bodies are counted
+        for(Stmt.Function method : stmt.methods){
+            method.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        assign(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        assign(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        assign(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        assign(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        assign(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        assign(stmt.condition);
+        assign(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        assign(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        assign(expr.callee);
+        for(Expr argument : expr.arguments){
+            assign(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        assign(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        assign(expr.left);
+        assign(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        assign(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        assign(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        int slot = allocate(expr.operator.line, logicalKind, 2);
+        slotOf.put(expr, slot);
+        logicalNames[slot] = expr.operator.lexeme;
+        assign(expr.left);
+        assign(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        assign(expr.object);
+        assign(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        assign(expr.object);
+        assign(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        assign(expr.object);
+        assign(expr.index);
+        assign(expr.value);
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+package me.germanvanni.jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//keeps a warmed up JVM around and runs scripts sent over a UNIX socket.
+//a request is a kind ("path" or "source") followed by its payload, the reply is a stream of
+//frames: stdout and stderr chunks as they are printed, then the exit code runFile would have used
+class Daemon {
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 0;
+
+    private static final String warmup =
+            "fn fib(n){ if(n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+            "class Counter{ ctor(){ this.count = 0; } add(n){ this.count = this.count + n; return this; } }\n" +
+            "var counter = Counter();\n" +
+            "var i = 0;\n" +
+            "while(i < 200){ counter.add(fib(10)); i = i + 1; }\n" +
+            "print \"total: \" + counter.count;\n";
+
+    static void serve(String socketPath) throws IOException{
+        final Path path = Paths.get(socketPath);
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = LocalSockets.bind(socketPath);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try{
+                Files.deleteIfExists(path);
+            } catch (IOException ignored){
+            }
+        }));
+
+        warmUp();
+        System.err.println("lox daemon listening on " + socketPath);
+
+        ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "lox-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        while(true){
+            SocketChannel client = server.accept();
+            connections.execute(() -> handle(client));
+        }
+    }
+
+    private static void warmUp(){
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        for(int i = 0; i < 50; i++){
+            execute(warmup, discard, discard);
+        }
+    }
+
+    private static void handle(SocketChannel client){
+        try(SocketChannel channel = client){
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            String kind = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            String text = new String(payload, "UTF-8");
+
+            PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDOUT)), true);
+            PrintStream stderr = new PrintStream(new FrameOutputStream(out, STDERR), true);
+
+            int exitCode;
+            if(kind.equals("source")){
+                exitCode = execute(text, stdout, stderr);
+            } else {
+                exitCode = executeFile(text, stdout, stderr);
+            }
+
+            stdout.flush();
+            synchronized (out){
+                out.writeByte(EXIT);
+                out.writeInt(exitCode);
+                out.flush();
+            }
+        } catch (IOException e){
+            //the client went away, nothing left to report to
+        }
+    }
+
+    private static int executeFile(String path, PrintStream stdout, PrintStream stderr){
+        byte[] bytes;
+        try{
+            bytes = Files.readAllBytes(Paths.get(path));
+        } catch (NoSuchFileException e){
+            stderr.println("No such file '" + path + "'.");
+            return 66;
+        } catch (IOException e){
+            stderr.println("Could not read '" + path + "': " + e.getMessage());
+            return 74;
+        }
+        return execute(new String(bytes, Charset.defaultCharset()), stdout, stderr);
+    }
+
+    private static int execute(String source, PrintStream stdout, PrintStream stderr){
+        //compile errors go to stdout, like they do when running a file
+        Program program = Program.compile(source, new ErrorReporter(stdout, stderr));
+        if(program == null) return 65;
+        return program.run(stdout, stderr);
+    }
+
+    //every write becomes one frame: a tag byte, a length and the bytes themselves
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte tag;
+
+        FrameOutputStream(DataOutputStream out, byte tag){
+            this.out = out;
+            this.tag = tag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if(length == 0) return;
+            synchronized (out){
+                out.writeByte(tag);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package me.germanvanni.jlox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+
+//the thin side of the daemon: sends a script path (or stdin) and replays what comes back
+class DaemonClient {
+    static int run(String socketPath, String script) throws IOException{
+        String kind;
+        byte[] payload;
+        if(script != null){
+            kind = "path";
+            payload = Paths.get(script).toAbsolutePath().toString().getBytes("UTF-8");
+        } else {
+            kind = "source";
+            payload = readAll(System.in);
+        }
+
+        try(SocketChannel channel = LocalSockets.connect(socketPath)){
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeUTF(kind);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8192];
+            while(true){
+                byte tag = in.readByte();
+                if(tag == Daemon.EXIT){
+                    System.out.flush();
+                    return in.readInt();
+                }
+
+                PrintStream target = tag == Daemon.STDERR ? System.err : System.out;
+                int length = in.readInt();
+                while(length > 0){
+                    int read = in.read(buffer, 0, Math.min(buffer.length, length));
+                    if(read < 0) throw new IOException("Daemon closed the connection.");
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+                target.flush();
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
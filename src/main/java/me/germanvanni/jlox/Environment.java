@@ -1,24 +1,38 @@
 package me.germanvanni.jlox;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Environment {
-    private final Map<String, Object> values = new HashMap<>();
+public class Environment implements Serializable {
+    private static final long serialVersionUID = 1L;
+    //stored in place of null, so a single lookup tells a null variable apart from an undefined one
+    private enum Nil { value }
+
+    private transient Map<Symbol, Object> values;
     final Environment enclosing;// we need a reference to the enclosing scope
 
     Environment(){
+        //the globals are shared by every task of a script
+        values = new ConcurrentHashMap<>();
         enclosing = null;
     }
     Environment(Environment enclosing){
+        if(Metrics.enabled) Metrics.environments.increment();
+        values = new HashMap<>();
         this.enclosing = enclosing;
     }
 
 
 
     Object get(Token name){
-        if(values.containsKey(name.lexeme)){
-            return values.get(name.lexeme);
+        Object value = values.get(name.symbol);
+        if(value != null){
+            return unwrap(value);
         }
 
         if(enclosing != null) return enclosing.get(name);
@@ -27,8 +41,7 @@ public class Environment {
     }
 
     void assign(Token name, Object value){
-        if(values.containsKey(name.lexeme)){
-            values.put(name.lexeme, value);
+        if(values.replace(name.symbol, wrap(value)) != null){
             return;
         }
 
@@ -40,12 +53,28 @@ public class Environment {
         throw new RuntimeError(name, "Assignment on undefined variable '" + name.lexeme + "'.");
     }
 
-    void define(String name, Object value){
-        values.put(name, value);
+    void define(Symbol name, Object value){
+        values.put(name, wrap(value));
+    }
+
+    //called on the owning thread before a spawned task closes over this scope,
+    //from then on its variables are shared the same way globals are
+    void share(){
+        if(!(values instanceof ConcurrentHashMap)){
+            values = new ConcurrentHashMap<>(values);
+        }
+    }
+
+    Map<Symbol, Object> values(){
+        Map<Symbol, Object> copy = new HashMap<>();
+        for(Map.Entry<Symbol, Object> entry : values.entrySet()){
+            copy.put(entry.getKey(), unwrap(entry.getValue()));
+        }
+        return copy;
     }
 
-    Object getAt(int distance, String name){
-        return ancestor(distance).values.get(name);
+    Object getAt(int distance, Symbol name){
+        return unwrap(ancestor(distance).values.get(name));
     }
 
     Environment ancestor(int distance){
@@ -57,6 +86,26 @@ public class Environment {
     }
 
     void assignAt(int distance, Token name, Object value){
-        ancestor(distance).values.put(name.lexeme, value);
+        ancestor(distance).values.put(name.symbol, wrap(value));
+    }
+
+    //shared scopes are stored as plain ones, there are no other tasks once a snapshot is booted
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashMap<>(values));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        values = (Map<Symbol, Object>) in.readObject();
+    }
+
+    private static Object wrap(Object value){
+        return value == null ? Nil.value : value;
+    }
+
+    private static Object unwrap(Object value){
+        return value == Nil.value ? null : value;
     }
 }
@@ -0,0 +1,40 @@
+package me.germanvanni.jlox;
+
+import java.io.PrintStream;
+
+//where compile and runtime errors of one run go, and whether there were any.
+//each interpreter gets its own, so separate runs don't share error state
+class ErrorReporter {
+    private final PrintStream compileErrors;
+    private final PrintStream runtimeErrors;
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+
+    ErrorReporter(PrintStream compileErrors, PrintStream runtimeErrors){
+        this.compileErrors = compileErrors;
+        this.runtimeErrors = runtimeErrors;
+    }
+
+    void error(int line, String message){
+        report(line, "", message);
+    }
+
+    void error(Token token, String message){
+        if(token.type == TokenType.EOF){
+            report(token.line, " at end", message );
+        }
+        else{
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    void runtimeError(RuntimeError error){
+        runtimeErrors.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+    }
+
+    private void report(int line, String where, String message){
+        compileErrors.println("[ line " + line + " ] Error " + where + ": " + message);
+        hadError = true;
+    }
+}
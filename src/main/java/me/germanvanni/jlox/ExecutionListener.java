@@ -0,0 +1,28 @@
+package me.germanvanni.jlox;
+
+//what a tool (tracer, debugger, coverage) attaches to an InstrumentedInterpreter. tasks of the script
+//run on other threads and report to the same listener, so it has to be thread safe when they are used
+interface ExecutionListener {
+    default void statement(Stmt statement){
+    }
+
+    //paren is the call's closing parenthesis, its line is the line of the call
+    default void callEntered(LoxCallable callee, Token paren){
+    }
+
+    default void callExited(LoxCallable callee, Token paren, Object result){
+    }
+
+    //the call ended with an error (or a cancellation) instead
+    default void callFailed(LoxCallable callee, Token paren, RuntimeException error){
+    }
+
+    default void branch(Stmt.If stmt, boolean taken){
+    }
+
+    default void branch(Expr.Logical expr, boolean shortCircuits){
+    }
+
+    default void runtimeError(RuntimeError error){
+    }
+}
@@ -1,8 +1,10 @@
 package me.germanvanni.jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-abstract class Expr{
+abstract class Expr implements Serializable{
+    private static final long serialVersionUID = 1L;
 
  abstract <R> R accept(Visitor<R> visitor);
     interface Visitor<R> {
@@ -18,8 +20,11 @@ abstract class Expr{
         R visitSetExpr(Set expr);
         R visitThisExpr(This expr);
         R visitSuperExpr(Super expr);
+        R visitIndexExpr(Index expr);
+        R visitIndexSetExpr(IndexSet expr);
     }
 static class Assign extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Token name;
     final Expr value;
@@ -37,6 +42,7 @@ static class Assign extends Expr {
 }
 
 static class Call extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr callee;
     final Token paren;
@@ -56,6 +62,7 @@ static class Call extends Expr {
 }
 
 static class Get extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr object;
     final Token name;
@@ -73,6 +80,7 @@ static class Get extends Expr {
 }
 
 static class Binary extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr left;
     final Token operator;
@@ -92,6 +100,7 @@ static class Binary extends Expr {
 }
 
 static class Grouping extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr expression;
 
@@ -107,6 +116,7 @@ static class Grouping extends Expr {
 }
 
 static class Literal extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Object value;
 
@@ -122,6 +132,7 @@ static class Literal extends Expr {
 }
 
 static class Unary extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Token operator;
     final Expr right;
@@ -139,6 +150,7 @@ static class Unary extends Expr {
 }
 
 static class Variable extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Token name;
 
@@ -154,6 +166,7 @@ static class Variable extends Expr {
 }
 
 static class Logical extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr left;
     final Token operator;
@@ -173,6 +186,7 @@ static class Logical extends Expr {
 }
 
 static class Set extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Expr object;
     final Token name;
@@ -192,6 +206,7 @@ static class Set extends Expr {
 }
 
 static class This extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Token keyword;
 
@@ -207,6 +222,7 @@ static class This extends Expr {
 }
 
 static class Super extends Expr {
+    private static final long serialVersionUID = 1L;
 
     final Token keyword;
     final Token method;
@@ -223,4 +239,46 @@ static class Super extends Expr {
 
 }
 
+static class Index extends Expr {
+    private static final long serialVersionUID = 1L;
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+
+    Index(Expr object, Token bracket, Expr index) {
+        this.object = object;
+        this.bracket = bracket;
+        this.index = index;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+        return visitor.visitIndexExpr(this);
+    }
+
+}
+
+static class IndexSet extends Expr {
+    private static final long serialVersionUID = 1L;
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+    final Expr value;
+
+    IndexSet(Expr object, Token bracket, Expr index, Expr value) {
+        this.object = object;
+        this.bracket = bracket;
+        this.index = index;
+        this.value = value;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+        return visitor.visitIndexSetExpr(this);
+    }
+
+}
+
 }
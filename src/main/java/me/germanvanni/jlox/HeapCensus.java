@@ -0,0 +1,250 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//heapCensus(), and lox --heap-dump for the host: walks the Lox objects reachable from the globals and the
+//environments in use, breadth first, and counts them per class. sizes are the estimates the memory limit
+//uses (see Budget). an object that isn't an instance is retained by the instance it was first reached
+//through, so the retained size of a class is its instances plus what hangs off them and nothing else.
+//
+//the environments of the calls on the stack are only tracked when the JVM runs with
+//-Dlox.heapCensus=true, a static final like Metrics.enabled, so calls don't pay for it otherwise. the
+//objects of other tasks aren't safe to read while they run, so only the script itself takes a census, and
+//only while none of its tasks runs. a task couldn't tell the script isn't changing what it walks
+final class HeapCensus {
+    static final boolean enabled = Boolean.getBoolean("lox.heapCensus");
+    private static final String[] kinds = {"instance", "class", "function", "environment", "array", "map", "string", "other"};
+    private static final int instanceKind = 0;
+
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+    private final List<Object> objects = new ArrayList<>();
+    private final List<Long> sizes = new ArrayList<>();
+    private final List<int[]> references = new ArrayList<>();
+    //the instance retaining each object, -1 when none does
+    private final List<Integer> owners = new ArrayList<>();
+    private final Deque<Integer> pending = new ArrayDeque<>();
+
+    private HeapCensus(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("heapCensus", 0) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        if(!enabled) throw new NativeError("heapCensus() needs the JVM to run with -Dlox.heapCensus=true.");
+                        if(interpreter.forked) throw new NativeError("heapCensus() can only run in the script, not in a task.");
+                        if(interpreter.spawned.running()){
+                            throw new NativeError("heapCensus() can't run while tasks are running, await them first.");
+                        }
+                        HeapCensus census = take(interpreter);
+                        census.print(interpreter.out);
+                        LoxMap counts = new LoxMap();
+                        for(Map.Entry<String, long[]> row : census.byClass().entrySet()){
+                            counts.set(row.getKey(), (double) row.getValue()[0]);
+                        }
+                        return counts;
+                    }
+                });
+    }
+
+    static HeapCensus take(Interpreter interpreter){
+        HeapCensus census = new HeapCensus();
+        census.reach(interpreter.globals, -1);
+        for(Environment environment : interpreter.liveEnvironments()){
+            census.reach(environment, -1);
+        }
+        census.walk();
+        return census;
+    }
+
+    private void reach(Object value, int from){
+        if(value == null || value instanceof Double || value instanceof Boolean || ids.containsKey(value)) return;
+        //natives are part of the interpreter, not of the script
+        if(value instanceof LoxCallable && !(value instanceof LoxFunction) && !(value instanceof LoxClass)) return;
+
+        int id = objects.size();
+        ids.put(value, id);
+        objects.add(value);
+        sizes.add(null);
+        references.add(null);
+        int owner = from < 0 ? -1 : owners.get(from);
+        if(from >= 0 && kind(objects.get(from)) == instanceKind) owner = from;
+        owners.add(kind(value) == instanceKind ? id : owner);
+        pending.add(id);
+    }
+
+    private void walk(){
+        while(!pending.isEmpty()){
+            int id = pending.poll();
+            Object value = objects.get(id);
+            List<Object> children = new ArrayList<>();
+            long size = visit(value, children);
+            sizes.set(id, size);
+
+            int[] childIds = new int[children.size()];
+            int count = 0;
+            for(Object child : children){
+                reach(child, id);
+                Integer childId = child == null ? null : ids.get(child);
+                if(childId != null) childIds[count++] = childId;
+            }
+            references.set(id, Arrays.copyOf(childIds, count));
+        }
+    }
+
+    //the shallow size of value, adding what it references to children
+    private static long visit(Object value, List<Object> children){
+        if(value instanceof LoxInstance){
+            //its class is counted where it was declared, not as part of every instance
+            LoxInstance instance = (LoxInstance) value;
+            children.addAll(instance.fieldValues());
+            return Budget.instanceBytes + Budget.fieldBytes * instance.fieldValues().size();
+        }
+        if(value instanceof LoxClass){
+            LoxClass klass = (LoxClass) value;
+            children.addAll(klass.methods.values());
+            children.add(klass.superClass);
+            return Budget.instanceBytes + Budget.variableBytes * klass.methods.size();
+        }
+        if(value instanceof LoxFunction){
+            children.add(((LoxFunction) value).closure);
+            return Budget.closureBytes;
+        }
+        if(value instanceof Environment){
+            Environment environment = (Environment) value;
+            Map<Symbol, Object> values = environment.values();
+            children.addAll(values.values());
+            children.add(environment.enclosing);
+            return Budget.environmentBytes + Budget.variableBytes * values.size();
+        }
+        if(value instanceof LoxArray){
+            LoxArray array = (LoxArray) value;
+            for(int i = 0; i < array.size(); i++){
+                children.add(array.get(i));
+            }
+            return Budget.arrayBytes + Budget.elementBytes * array.size();
+        }
+        if(value instanceof LoxMap){
+            LoxMap map = (LoxMap) value;
+            map.contents(children);
+            return Budget.mapBytes + Budget.entryBytes * map.size();
+        }
+        if(value instanceof String) return Budget.stringBytes + 2L * ((String) value).length();
+        //counted as the string it flattens into
+        if(value instanceof Rope) return Budget.stringBytes + 2L * ((Rope) value).length();
+        return Budget.closureBytes;
+    }
+
+    private static int kind(Object value){
+        if(value instanceof LoxInstance) return instanceKind;
+        if(value instanceof LoxClass) return 1;
+        if(value instanceof LoxFunction) return 2;
+        if(value instanceof Environment) return 3;
+        if(value instanceof LoxArray) return 4;
+        if(value instanceof LoxMap) return 5;
+        if(Rope.isString(value)) return 6;
+        return 7;
+    }
+
+    private long size(int id){
+        return sizes.get(id);
+    }
+
+    //class name to {instances, shallow bytes, retained bytes}, largest retained first
+    private Map<String, long[]> byClass(){
+        Map<String, long[]> rows = new LinkedHashMap<>();
+        for(int id = 0; id < objects.size(); id++){
+            int owner = owners.get(id);
+            if(owner < 0) continue;
+            long[] row = rows.computeIfAbsent(((LoxInstance) objects.get(owner)).klass().name, name -> new long[3]);
+            if(owner == id){
+                row[0]++;
+                row[1] += size(id);
+            }
+            row[2] += size(id);
+        }
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(rows.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[2], a.getValue()[2]));
+        Map<String, long[]> result = new LinkedHashMap<>();
+        for(Map.Entry<String, long[]> row : sorted){
+            result.put(row.getKey(), row.getValue());
+        }
+        return result;
+    }
+
+    //kind to {objects, bytes}
+    private long[][] byKind(){
+        long[][] rows = new long[kinds.length][2];
+        for(int id = 0; id < objects.size(); id++){
+            long[] row = rows[kind(objects.get(id))];
+            row[0]++;
+            row[1] += size(id);
+        }
+        return rows;
+    }
+
+    private List<String> table(){
+        List<String> lines = new ArrayList<>();
+        long total = 0;
+        for(int id = 0; id < objects.size(); id++){
+            total += size(id);
+        }
+        lines.add("heap census: " + objects.size() + " objects, about " + total + " bytes");
+        lines.add(String.format("%10s %12s %12s  %s", "instances", "shallow", "retained", "class"));
+        for(Map.Entry<String, long[]> row : byClass().entrySet()){
+            long[] counts = row.getValue();
+            lines.add(String.format("%10d %12d %12d  %s", counts[0], counts[1], counts[2], row.getKey()));
+        }
+        lines.add(String.format("%10s %12s  %s", "objects", "bytes", "kind"));
+        long[][] rows = byKind();
+        for(int kind = 0; kind < kinds.length; kind++){
+            if(rows[kind][0] > 0) lines.add(String.format("%10d %12d  %s", rows[kind][0], rows[kind][1], kinds[kind]));
+        }
+        return lines;
+    }
+
+    void print(Output out){
+        for(String line : table()){
+            out.println(line);
+        }
+    }
+
+    //the table as comments, then one "id kind class bytes retainedBy -> references" line per object
+    void dump(Path path) throws IOException{
+        try(Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)){
+            for(String line : table()){
+                writer.write("# " + line + "\n");
+            }
+            for(int id = 0; id < objects.size(); id++){
+                Object value = objects.get(id);
+                StringBuilder line = new StringBuilder();
+                line.append(id).append(' ').append(kinds[kind(value)]).append(' ').append(label(value))
+                        .append(' ').append(size(id)).append(' ').append(owners.get(id)).append(" ->");
+                for(int reference : references.get(id)){
+                    line.append(' ').append(reference);
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static String label(Object value){
+        if(value instanceof LoxInstance) return ((LoxInstance) value).klass().name;
+        if(value instanceof LoxClass) return ((LoxClass) value).name;
+        if(value instanceof LoxFunction) return ((LoxFunction) value).declaration.name.lexeme;
+        return "-";
+    }
+}
@@ -0,0 +1,68 @@
+package me.germanvanni.jlox;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//an interpreter reporting to a listener. only created when a tool is attached, so a plain Interpreter
+//never pays for the hooks
+class InstrumentedInterpreter extends Interpreter {
+    private final ExecutionListener listener;
+
+    InstrumentedInterpreter(ExecutionListener listener){
+        this(new ErrorReporter(System.out, System.err), new Output(System.out, Charset.defaultCharset(), System.console() != null),
+                new HashMap<Expr, Integer>(), listener);
+    }
+
+    InstrumentedInterpreter(ErrorReporter reporter, Output out, Map<Expr, Integer> locals, ExecutionListener listener){
+        super(reporter, out, locals);
+        this.listener = listener;
+    }
+
+    private InstrumentedInterpreter(InstrumentedInterpreter parent){
+        super(parent);
+        this.listener = parent.listener;
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        listener.statement(statement);
+        super.execute(statement);
+    }
+
+    @Override
+    Object call(LoxCallable function, List<Object> arguments, Token paren) {
+        listener.callEntered(function, paren);
+        Object result;
+        try{
+            result = super.call(function, arguments, paren);
+        } catch (RuntimeException e){
+            listener.callFailed(function, paren, e);
+            throw e;
+        }
+        listener.callExited(function, paren, result);
+        return result;
+    }
+
+    @Override
+    void branch(Stmt.If stmt, boolean taken) {
+        listener.branch(stmt, taken);
+    }
+
+    @Override
+    void branch(Expr.Logical expr, boolean shortCircuits) {
+        listener.branch(expr, shortCircuits);
+    }
+
+    @Override
+    void runtimeError(RuntimeError error) {
+        listener.runtimeError(error);
+        super.runtimeError(error);
+    }
+
+    @Override
+    Interpreter fork() {
+        return new InstrumentedInterpreter(this);
+    }
+}
@@ -1,18 +1,55 @@
 package me.germanvanni.jlox;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
 
-    Environment globals = new Environment();
-    private final Map<Expr, Integer> locals = new HashMap<>();
-    private Environment environment = globals;
+    final Environment globals;
+    final Map<Expr, Integer> locals;
+    final ErrorReporter reporter;
+    final Output out;
+    private Environment environment;
+    //set while a Profiler samples this script, the stack is this interpreter's thread's
+    Profiler profiler;
+    private Profiler.CallStack stack;
+    //the limits of the run this interpreter belongs to, shared with its tasks. ticks and allowance are what
+    //is left of the fuel and memory taken from it, spent one per loop iteration and call and by allocate()
+    Budget budget = new Budget(Limits.none());
+    private long ticks = 0;
+    private long allowance = 0;
+    private int depth = 0;
+    //the tasks of the run this interpreter belongs to, shared with them
+    final Spawned spawned;
+    //whether this runs a task or bulk worker rather than the script itself
+    final boolean forked;
+    //the environment each call on the stack was made from, what a heap census walks besides the globals.
+    //only kept when census is enabled
+    private Environment[] frames = HeapCensus.enabled ? new Environment[64] : null;
+    //the paren of the call being made, where the calls a native makes back into the script come from
+    private Token site;
 
     Interpreter(){
-        globals.define("clock", new LoxCallable() {
+        //flushed per line when a person is watching the terminal, in big blocks when output is piped
+        this(new ErrorReporter(System.out, System.err), new Output(System.out, Charset.defaultCharset(), System.console() != null),
+                new HashMap<Expr, Integer>());
+    }
+
+    Interpreter(ErrorReporter reporter, Output out, Map<Expr, Integer> locals){
+        this.reporter = reporter;
+        this.out = out;
+        this.locals = locals;
+        this.globals = new Environment();
+        this.environment = globals;
+        this.spawned = new Spawned();
+        this.forked = false;
+
+        globals.define(Symbol.of("clock"), new LoxCallable() {
             @Override
             public Object call(Interpreter interpreter, List<Object> arguments) {
                 return (double)System.currentTimeMillis() / 1000.0;
@@ -23,6 +60,35 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 return 0;
             }
         });
+        TaskNatives.define(globals);
+        ArrayNatives.define(globals);
+        MapNatives.define(globals);
+        BulkNatives.define(globals);
+        StringNatives.define(globals);
+        BenchNatives.define(globals);
+        HeapCensus.define(globals);
+    }
+
+    //runs code of the same script on another thread: globals, resolution and output are shared,
+    //the current environment is its own
+    Interpreter(Interpreter parent){
+        this.reporter = parent.reporter;
+        this.out = parent.out;
+        this.locals = parent.locals;
+        this.globals = parent.globals;
+        this.environment = globals;
+        this.profiler = parent.profiler;
+        this.budget = parent.budget;
+        this.spawned = parent.spawned;
+        this.forked = true;
+        this.site = parent.site;
+    }
+
+    //null unless profiling. looked up on first use, since a worker is created on another thread than it runs on
+    Profiler.CallStack callStack(){
+        if(profiler == null) return null;
+        if(stack == null) stack = profiler.stack();
+        return stack;
     }
 
     void interpret(List<Stmt> statements){
@@ -31,16 +97,105 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 execute(statement);
             }
         } catch ( RuntimeError e){
-            Lox.runtimeError(e);
+            runtimeError(e);
         }
     }
 
-    private void execute(Stmt statement){
+    //a whole script: it only ends once the tasks it spawned have. when it fails they are cancelled instead
+    void interpretScript(List<Stmt> statements){
+        boolean failed = true;
+        try{
+            interpret(statements);
+            if(!reporter.hadRuntimeError) awaitTasks();
+            failed = reporter.hadRuntimeError;
+        } finally {
+            if(failed) cancelTasks();
+        }
+    }
+
+    //waits for the tasks of the run, reporting the errors of those nobody awaited
+    void awaitTasks(){
+        spawned.join(this);
+    }
+
+    void cancelTasks(){
+        spawned.cancel();
+    }
+
+    //execute, call, branch, runtimeError and fork are what InstrumentedInterpreter hooks into. while it isn't
+    //loaded the JIT sees a single implementation of each, so they cost nothing
+    void execute(Stmt statement){
         statement.accept(this);
     }
 
-    void resolve(Expr expr, int depth){
-        locals.put(expr, depth);
+    void runtimeError(RuntimeError error){
+        //what the script printed before the error comes first
+        out.flush();
+        reporter.runtimeError(error);
+    }
+
+    //which way a condition went, for coverage
+    void branch(Stmt.If stmt, boolean taken){
+    }
+
+    void branch(Expr.Logical expr, boolean shortCircuits){
+    }
+
+    //charges the run for a new object of about this many bytes, reporting a run over its memory at line
+    void allocate(long bytes, int line){
+        if((allowance -= bytes) < 0 && !refill()){
+            throw new RuntimeError(new Token(TokenType.EOF, "", null, line), outOfMemory());
+        }
+    }
+
+    //for natives and callables, the call they are in reports the error
+    void allocate(long bytes){
+        if((allowance -= bytes) < 0 && !refill()) throw new NativeError(outOfMemory());
+    }
+
+    //takes what the allocation needs plus a chunk for the next ones, less near the limit so a small limit
+    //isn't used up by the first chunk and what is left can still go to other threads one allocation at a time
+    private boolean refill(){
+        long needed = -allowance;
+        long extra = Math.max(0, Math.min(Budget.memoryChunk, budget.maxMemory - budget.allocated() - needed));
+        if(!budget.reserve(needed + extra)){
+            extra = 0;
+            if(!budget.reserve(needed)) return false;
+        }
+        allowance = extra;
+        return true;
+    }
+
+    //what the run allocated, exact for what this interpreter did
+    long allocatedBytes(){
+        return budget.allocated() - allowance;
+    }
+
+    //gives back the memory taken but not used, so what the budget counts is closer to what was allocated
+    void returnAllowance(){
+        if(allowance > 0) budget.reserve(-allowance);
+        allowance = 0;
+    }
+
+    private String outOfMemory(){
+        allowance = 0;
+        return "Execution allocated more than its " + budget.maxMemory + " bytes of memory.";
+    }
+
+    //a new string of this length
+    void allocateString(int length, int line){
+        allocate(Budget.stringBytes + 2L * length, line);
+    }
+
+    //an interpreter for a task or worker of this script
+    Interpreter fork(){
+        return new Interpreter(this);
+    }
+
+    void forget(List<Expr> exprs){
+        for(Expr expr : exprs){
+            locals.remove(expr);
+        }
     }
 
     void executeBlock(List<Stmt> statements, Environment environment){
@@ -67,14 +222,17 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
+        allocate(Budget.closureBytes + Budget.variableBytes, stmt.name.line);
         LoxFunction function = new LoxFunction(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
+        environment.define(stmt.name.symbol, function);
         return null;
     }
 
     @Override
     public Void visitIfStmt(Stmt.If stmt) {
-        if(isTruthy(evaluate(stmt.condition))){
+        boolean taken = isTruthy(evaluate(stmt.condition));
+        branch(stmt, taken);
+        if(taken){
             execute(stmt.thenBranch);
         } else if(stmt.elseBranch != null){
             execute(stmt.elseBranch);
@@ -84,6 +242,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
+        if(--ticks <= 0) refuel(expr.paren.line);
         Object calle = evaluate(expr.callee);
 
         List<Object> arguments = new ArrayList<>();
@@ -102,7 +261,57 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                     + " arguments but got " + arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        return call(function, arguments, expr.paren);
+    }
+
+    Object call(LoxCallable function, List<Object> arguments, Token paren){
+        if(++depth > budget.maxCallDepth){
+            depth--;
+            throw new LimitExceededError(Limits.Kind.CALL_DEPTH, paren.line,
+                    "Execution went deeper than " + budget.maxCallDepth + " calls.");
+        }
+        if(HeapCensus.enabled){
+            if(depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+            frames[depth] = environment;
+        }
+        Token caller = site;
+        site = paren;
+        try{
+            return function.call(this, arguments);
+        } catch (NativeError e){
+            throw new RuntimeError(paren, e.getMessage());
+        } finally {
+            site = caller;
+            if(HeapCensus.enabled) frames[depth] = null;
+            depth--;
+        }
+    }
+
+    //how natives call functions they were given: like a call in the script at the native's own call, taking
+    //fuel, counting toward the call depth and seen by listeners and the profiler. arity is the native's to check
+    Object callFromNative(LoxCallable function, List<Object> arguments){
+        return callFromHost(function, arguments, site);
+    }
+
+    //same for the host calling into a script, errors are reported at paren
+    Object callFromHost(LoxCallable function, List<Object> arguments, Token paren){
+        if(--ticks <= 0) refuel(paren.line);
+        return call(function, arguments, paren);
+    }
+
+    //the line of the call being made, where a native reports a limit it ran into
+    int line(){
+        return site.line;
+    }
+
+    //the environments still in use on this interpreter's thread, innermost last
+    List<Environment> liveEnvironments(){
+        List<Environment> live = new ArrayList<>();
+        for(int i = 1; frames != null && i <= depth; i++){
+            live.add(frames[i]);
+        }
+        live.add(environment);
+        return live;
     }
 
     @Override
@@ -124,18 +333,68 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
         }
 
         Object value = evaluate(expr.value);
-        ((LoxInstance)object).set(expr.name, value);
+        if(((LoxInstance)object).set(expr.name, value)) allocate(Budget.fieldBytes, expr.name.line);
+        return value;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if(object instanceof LoxMap){
+            LoxMap map = (LoxMap)object;
+            map.checkOwner(expr.bracket);
+            return map.get(index);
+        }
+
+        LoxArray array = indexedArray(expr.bracket, object, index);
+        return array.get((int)(double)index);
+    }
+
+    @Override
+    public Object visitIndexSetExpr(Expr.IndexSet expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        Object value = evaluate(expr.value);
+
+        if(object instanceof LoxMap){
+            LoxMap map = (LoxMap)object;
+            map.checkOwner(expr.bracket);
+            if(map.set(index, value)) allocate(Budget.entryBytes, expr.bracket.line);
+            return value;
+        }
+
+        LoxArray array = indexedArray(expr.bracket, object, index);
+        array.set((int)(double)index, value);
         return value;
     }
 
+    private LoxArray indexedArray(Token bracket, Object object, Object index){
+        if(!(object instanceof LoxArray)){
+            throw new RuntimeError(bracket, "Only arrays and maps can be indexed.");
+        }
+        LoxArray array = (LoxArray)object;
+        array.checkOwner(bracket);
+
+        if(!(index instanceof Double) || (double)index != Math.floor((double)index)){
+            throw new RuntimeError(bracket, "Index must be a whole number.");
+        }
+        double position = (double)index;
+        if(position < 0 || position >= array.size()){
+            throw new RuntimeError(bracket, "Index " + stringify(index) + " is out of bounds for length " + array.size() + ".");
+        }
+        return array;
+    }
+
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
         int distance = locals.get(expr);
-        LoxClass superClass = (LoxClass)environment.getAt(distance, "super");
+        LoxClass superClass = (LoxClass)environment.getAt(distance, Symbol.superKeyword);
 
-        LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
+        LoxInstance object = (LoxInstance) environment.getAt(distance - 1, Symbol.thisKeyword);
 
-        LoxFunction method = superClass.findMethod(expr.method.lexeme);
+        LoxFunction method = superClass.findMethod(expr.method.symbol);
 
         if (method == null){
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
@@ -150,7 +409,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
+        environment.define(stmt.name.symbol, value);
         return null;
     }
 
@@ -163,7 +422,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
     private Object lookUpVariable(Token name, Expr expr){
         Integer distance = locals.get(expr);
         if(distance != null){
-            return environment.getAt(distance, name.lexeme);
+            return environment.getAt(distance, name.symbol);
         }
         else{
             return globals.get(name);
@@ -190,6 +449,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 return (double) left <= (double)right;
             case MINUS:
                 checkNumberOperands(expr.operator, left, right);
+                if(Metrics.enabled) Metrics.numberArithmetic.increment();
                 return (double)left - (double)right;
             case PLUS:
                 //we allow implicit conversion of numbers to strings
@@ -197,24 +457,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 if(left instanceof Double){
 
                     if(right instanceof Double) {
+                        if(Metrics.enabled) Metrics.numberArithmetic.increment();
                         return (double) left + (double) right;
-                    }else if (right instanceof String){
-                        String strLeft =  Double.toString((double)left);
-                        if(strLeft.endsWith(".0")){
-                            strLeft = strLeft.substring(0, strLeft.length() - 2);
-                        }
-                        return strLeft + (String)right;
+                    }else if (Rope.isString(right)){
+                        if(Metrics.enabled) Metrics.mixedConcatenations.increment();
+                        return concat(stringify((double) left), right, expr.operator);
                     }
                 }
-                if(left instanceof String){
-                    if(right instanceof String){
-                        return (String)left + (String)right;
+                if(Rope.isString(left)){
+                    if(Rope.isString(right)){
+                        if(Metrics.enabled) Metrics.stringConcatenations.increment();
+                        return concat(left, right, expr.operator);
                     } else if (right instanceof Double){
-                        String strRight =  Double.toString((double)right);
-                        if(strRight.endsWith(".0")){
-                            strRight = strRight.substring(0, strRight.length() - 2);
-                        }
-                        return (String)left + strRight;
+                        if(Metrics.enabled) Metrics.mixedConcatenations.increment();
+                        return concat(left, stringify((double) right), expr.operator);
                     }
                 }
                 throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings");
@@ -222,9 +478,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 checkNumberOperands(expr.operator, left, right);
                 double divisor = (double)right;
                 if(divisor == 0) throw new RuntimeError(expr.operator, "Can't divide by 0!");
+                if(Metrics.enabled) Metrics.numberArithmetic.increment();
                 return (double)left / (double)right;
             case STAR:
                 checkNumberOperands(expr.operator, left, right);
+                if(Metrics.enabled) Metrics.numberArithmetic.increment();
                 return (double)left * (double)right;
             case BANG_EQUAL: return !isEqual(left, right);
             case EQUAL_EQUAL: return isEqual(left, right);
@@ -233,8 +491,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
         return null;
     }
 
+    //charged before anything is built. a short result is copied right away, a rope only copies when
+    //flattened so it is charged the smaller part: appending in a loop costs the appended characters,
+    //doubling a string costs what it grows by
+    private Object concat(Object left, Object right, Token operator){
+        long length = (long) Rope.length(left) + Rope.length(right);
+        if(Rope.copies(length)) allocate(Budget.stringBytes + 2L * length, operator.line);
+        else allocate(Budget.ropeBytes + 2L * Math.min(Rope.length(left), Rope.length(right)), operator.line);
+        return Rope.concat(left, right);
+    }
+
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        allocate(Budget.environmentBytes, stmt.line);
         executeBlock(stmt.statements, new Environment(environment));
         return null;
     }
@@ -248,17 +517,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
             }
         }
-        environment.define(stmt.name.lexeme, null);
+        environment.define(stmt.name.symbol, null);
 
         if(stmt.superclass != null){
             environment = new Environment(environment);
-            environment.define("super", superClass);
+            environment.define(Symbol.superKeyword, superClass);
         }
 
-        Map<String, LoxFunction> methods = new HashMap<>();
+        Map<Symbol, LoxFunction> methods = new HashMap<>();
         for(Stmt.Function method : stmt.methods){
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("ctor"));
-            methods.put(method.name.lexeme, function);
+            allocate(Budget.closureBytes + Budget.variableBytes, method.name.line);
+            LoxFunction function = new LoxFunction(method, environment, method.name.symbol == Symbol.ctor);
+            methods.put(method.name.symbol, function);
         }
         LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass)superClass, methods);
 
@@ -277,7 +547,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr){
-        Object value = expr.value;
+        Object value = evaluate(expr.value);
 
         Integer distance = locals.get(expr);
         if(distance != null){
@@ -307,6 +577,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
                 return !isTruthy(right);
             case MINUS:
                 checkNumberOperand(expr.operator, right);
+                if(Metrics.enabled) Metrics.numberArithmetic.increment();
                 return -(double)right;
 
         }
@@ -317,6 +588,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
     public Void visitWhileStmt(Stmt.While stmt) {
         while(isTruthy(evaluate(stmt.condition))){
             execute(stmt.body);
+            if(--ticks <= 0) refuel(stmt.line);
         }
         return null;
     }
@@ -325,11 +597,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
     public Object visitLogicalExpr(Expr.Logical expr) {
         Object left = evaluate(expr.left);
 
-        if(expr.operator.type == TokenType.OR){
-            if(isTruthy(left)) return left;
-        } else{
-            if(!isTruthy(left)) return left;
-        }
+        boolean shortCircuits = expr.operator.type == TokenType.OR ? isTruthy(left) : !isTruthy(left);
+        branch(expr, shortCircuits);
+        if(shortCircuits) return left;
 
         return evaluate(expr.right);
     }
@@ -347,11 +617,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.println(value);
         return null;
     }
 
-    private boolean isTruthy(Object object){
+    //loops and calls are the only ways a script can keep running, so that's where we notice a cancelled
+    //run or one over its limits. only every so many steps, the rest is a decrement
+    private void refuel(int line){
+        if(Thread.currentThread().isInterrupted() || spawned.cancelled){
+            throw new CancellationException("Execution was cancelled.");
+        }
+        ticks = budget.take(line);
+    }
+
+    static boolean isTruthy(Object object){
         //"null" and "false" are false, everything else is true:
         if(object == null) return false;
 
@@ -363,6 +642,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
     private boolean isEqual(Object a, Object b){
         if(a == null && b == null) return true;
         if(a == null) return false;
+        if(b instanceof Rope) return b.equals(a);
         return a.equals(b);
     }
     private void checkNumberOperand(Token operator, Object operand){
@@ -374,17 +654,23 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>{
         throw new RuntimeError(operator, "Operands must be numbers");
     }
 
-    private String stringify (Object object){
+    static String stringify (Object object){
         if(object == null) return "null";
 
-        if(object instanceof Double){
-            String t = object.toString();
-            if(t.endsWith(".0")){
-                t = t.substring(0, t.length() - 2);
-            }
-            return t;
-        }
+        if(object instanceof Double) return stringify((double) object);
 
         return object.toString();
     }
+
+    static String stringify(double number){
+        //whole numbers are the common case and Long.toString is much cheaper. from 1e7 on Double.toString
+        //switches to 1.0E7 notation, which is kept as is
+        if(number == (long) number && Math.abs(number) < 1e7 && !(number == 0 && 1 / number < 0)){
+            return Long.toString((long) number);
+        }
+
+        String text = Double.toString(number);
+        if(text.endsWith(".0")) return text.substring(0, text.length() - 2);
+        return text;
+    }
 }
@@ -0,0 +1,23 @@
+package me.germanvanni.jlox;
+
+//thrown out of Program.run when a run goes over one of its Limits. scripts can't catch it, the host can
+public class LimitExceededError extends RuntimeException{
+    private static final long serialVersionUID = 1L;
+    private final Limits.Kind limit;
+    private final int line;
+
+    LimitExceededError(Limits.Kind limit, int line, String message){
+        super(message + " [line " + line + "]");
+        this.limit = limit;
+        this.line = line;
+    }
+
+    public Limits.Kind getLimit() {
+        return limit;
+    }
+
+    //the line of the loop or call where the run was stopped
+    public int getLine() {
+        return line;
+    }
+}
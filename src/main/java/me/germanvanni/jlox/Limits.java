@@ -0,0 +1,50 @@
+package me.germanvanni.jlox;
+
+import java.util.concurrent.TimeUnit;
+
+//budgets for one run of a program: fuel (loop iterations plus calls), wall-clock time, call depth and
+//memory. immutable, each with* returns a copy. a run going over one of the first three stops with a
+//LimitExceededError, one allocating more than its memory with a runtime error like any other
+public final class Limits {
+    public enum Kind { FUEL, DEADLINE, CALL_DEPTH }
+
+    private static final Limits none = new Limits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    final long fuel;
+    final long timeoutNanos;
+    final int maxCallDepth;
+    final long maxMemory;
+
+    private Limits(long fuel, long timeoutNanos, int maxCallDepth, long maxMemory){
+        this.fuel = fuel;
+        this.timeoutNanos = timeoutNanos;
+        this.maxCallDepth = maxCallDepth;
+        this.maxMemory = maxMemory;
+    }
+
+    public static Limits none(){
+        return none;
+    }
+
+    public Limits withFuel(long fuel){
+        if(fuel < 0) throw new IllegalArgumentException("Fuel can't be negative.");
+        return new Limits(fuel, timeoutNanos, maxCallDepth, maxMemory);
+    }
+
+    public Limits withTimeout(long timeout, TimeUnit unit){
+        if(timeout < 0) throw new IllegalArgumentException("The timeout can't be negative.");
+        return new Limits(fuel, unit.toNanos(timeout), maxCallDepth, maxMemory);
+    }
+
+    public Limits withMaxCallDepth(int maxCallDepth){
+        if(maxCallDepth < 1) throw new IllegalArgumentException("The call depth must be at least 1.");
+        return new Limits(fuel, timeoutNanos, maxCallDepth, maxMemory);
+    }
+
+    //counts what the script allocates (instances, strings, scopes, closures, arrays and maps), not what is
+    //still alive, so it also bounds how much garbage a run may leave to the collector
+    public Limits withMaxMemory(long bytes){
+        if(bytes < 0) throw new IllegalArgumentException("The memory limit can't be negative.");
+        return new Limits(fuel, timeoutNanos, maxCallDepth, bytes);
+    }
+}
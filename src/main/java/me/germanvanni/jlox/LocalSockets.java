@@ -0,0 +1,47 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+//UNIX domain sockets only exist from Java 16 on, while we still compile for 8,
+//so the few calls that need them go through reflection
+final class LocalSockets {
+    private LocalSockets(){
+    }
+
+    static ServerSocketChannel bind(String path) throws IOException{
+        ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+        ServerSocketChannel server = (ServerSocketChannel) invoke(ServerSocketChannel.class, "open", ProtocolFamily.class, unix);
+        server.bind(address(path));
+        return server;
+    }
+
+    static SocketChannel connect(String path) throws IOException{
+        return SocketChannel.open(address(path));
+    }
+
+    private static SocketAddress address(String path) throws IOException{
+        try{
+            Class<?> type = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) invoke(type, "of", String.class, path);
+        } catch (ClassNotFoundException e){
+            throw new IOException("UNIX domain sockets need Java 16 or newer.", e);
+        }
+    }
+
+    private static Object invoke(Class<?> type, String method, Class<?> parameter, Object argument) throws IOException{
+        try{
+            return type.getMethod(method, parameter).invoke(null, argument);
+        } catch (InvocationTargetException e){
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException | IllegalArgumentException e){
+            throw new IOException("UNIX domain sockets need Java 16 or newer.", e);
+        }
+    }
+}
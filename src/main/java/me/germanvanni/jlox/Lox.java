@@ -6,15 +6,55 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    private static Interpreter interpreter = new Interpreter();
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: lox [script]");
+        if (args.length == 2 && args[0].equals("--daemon")) {
+            Daemon.serve(args[1]);
+        } else if ((args.length == 2 || args.length == 3) && args[0].equals("--client")) {
+            System.exit(DaemonClient.run(args[1], args.length == 3 ? args[2] : null));
+        } else if (args.length == 3 && args[0].equals("--snapshot")) {
+            System.exit(Snapshot.build(args[1], args[2]));
+        } else if ((args.length == 2 || args.length == 3) && args[0].equals("--boot")) {
+            interpreter = Snapshot.boot(Paths.get(args[1]));
+            if (args.length == 3) runFile(args[2]);
+            else runPrompt();
+        } else if (args.length >= 2 && args.length <= 4 && args[0].equals("--records")) {
+            byte delimiter = '\n';
+            try{
+                if(args.length == 4) delimiter = Records.delimiter(args[3]);
+            } catch (IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                System.exit(64);
+            }
+            byte[] bytes = Files.readAllBytes(Paths.get(args[1]));
+            System.exit(Records.run(interpreter, new String(bytes, Charset.defaultCharset()),
+                    args.length >= 3 ? args[2] : null, delimiter));
+        } else if (args.length == 3 && args[0].equals("--coverage")) {
+            byte[] bytes = Files.readAllBytes(Paths.get(args[2]));
+            System.exit(Coverage.run(new String(bytes, Charset.defaultCharset()), Paths.get(args[1])));
+        } else if (args.length == 2 && args[0].equals("--trace")) {
+            interpreter = new InstrumentedInterpreter(new Tracer(System.err));
+            runFile(args[1]);
+        } else if (args.length == 3 && args[0].equals("--profile")) {
+            System.exit(profile(args[1], args[2]));
+        } else if (args.length == 3 && args[0].equals("--heap-dump")) {
+            System.exit(heapDump(args[1], args[2]));
+        } else if (args.length >= 3 && args.length <= 6 && args[0].equals("--regress")) {
+            try{
+                System.exit(Regressions.run(args));
+            } catch (InterruptedException e){
+                System.exit(1);
+            }
+        } else if (args.length > 1) {
+            System.out.println("Usage: lox [script] | lox --daemon <socket> | lox --client <socket> [script]\n" +
+                    "       lox --snapshot <prelude> <snapshot> | lox --boot <snapshot> [script]\n" +
+                    "       lox --records <script> [input] [delimiter] | lox --profile <stacks> <script> | lox --trace <script>\n" +
+                    "       lox --coverage <report> <script> | lox --regress <programs> <results> [baseline] [runs] [threshold%]\n" +
+                    "       lox --heap-dump <dump> <script>");
             System.exit(64);
         } else if (args.length == 1) {
             runFile(args[0]);
@@ -24,64 +64,77 @@ public class Lox {
     }
 
     public static void runFile(String path) throws IOException{
+        int exitCode = runScript(path);
+        if(exitCode != 0) System.exit(exitCode);
+    }
+
+    private static int runScript(String path) throws IOException{
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        try{
+            run(new String(bytes, Charset.defaultCharset()));
+        } finally {
+            interpreter.out.flush();
+        }
 
-        if(hadError) System.exit(65);
-        if(hadRuntimeError) System.exit(70);
+        if(interpreter.reporter.hadError) return 65;
+        if(interpreter.reporter.hadRuntimeError) return 70;
+        return 0;
+    }
+
+    //writes the collapsed stacks to output and the table of hot functions to stderr
+    private static int profile(String output, String path) throws IOException{
+        Profiler profiler = Profiler.start(interpreter, 1, TimeUnit.MILLISECONDS);
+        int exitCode;
+        try{
+            exitCode = runScript(path);
+        } finally {
+            profiler.stop();
+        }
+        profiler.writeCollapsed(Paths.get(output));
+        profiler.printTable(System.err);
+        return exitCode;
+    }
+
+    //runs the script, then writes a census of what its globals hold once it and its tasks are done
+    private static int heapDump(String output, String path) throws IOException{
+        int exitCode = runScript(path);
+        HeapCensus.take(interpreter).dump(Paths.get(output));
+        return exitCode;
     }
 
     private static void runPrompt() throws IOException{
         InputStreamReader input = new InputStreamReader(System.in );
         BufferedReader reader = new BufferedReader(input);
+        Session session = new Session(interpreter);
 
         while(true){
-            System.out.print(" >");
+            interpreter.out.flush();
+            System.out.print(session.isPending() ? ".." : " >");
             String line = reader.readLine();
             if(line == null) break;
-            run(line);
-            hadError = false;
+            session.submit(line);
         }
     }
 
     private static void run(String source){
-        Scanner scanner = new Scanner(source);
+        run(interpreter, source);
+    }
+
+    static void run(Interpreter interpreter, String source){
+        ErrorReporter reporter = interpreter.reporter;
+        Scanner scanner = new Scanner(source, reporter);
         List<Token> tokens = scanner.scanTokens();
 
-        Parser parser = new Parser(tokens);
+        Parser parser = new Parser(tokens, reporter);
         List<Stmt> statements = parser.parse();
 
-        if (hadError) return;
+        if (reporter.hadError) return;
 
-        Resolver resolver = new Resolver(interpreter);
+        Resolver resolver = new Resolver(interpreter.locals, reporter);
         resolver.resolve(statements);
 
-        if(hadError) return;
+        if(reporter.hadError) return;
 
-        interpreter.interpret(statements);
+        interpreter.interpretScript(statements);
     }
-
-    static void error(int line, String message){
-        report(line, "", message);
-    }
-
-    static void error(Token token, String message){
-        if(token.type == TokenType.EOF){
-            report(token.line, " at end", message );
-        }
-        else{
-            report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
-
-    static void runtimeError(RuntimeError error){
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-
-    private static void report(int line, String where, String message){
-        System.out.println("[ line " + line + " ] Error " + where + ": " + message);
-        hadError = true;
-    }
-
 }
\ No newline at end of file
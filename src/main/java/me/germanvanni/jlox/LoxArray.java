@@ -0,0 +1,87 @@
+package me.germanvanni.jlox;
+
+import java.util.Arrays;
+import java.util.Deque;
+
+//a growable array. while it only holds numbers they are kept unboxed in a double[],
+//the first non-number stored moves everything to an Object[] for good
+class LoxArray extends Owned {
+    private static final long serialVersionUID = 1L;
+    private double[] numbers;
+    private Object[] values;
+    private int size;
+
+    LoxArray(int size){
+        this.numbers = new double[Math.max(size, 8)];
+        this.size = size;
+    }
+
+    int size(){
+        return size;
+    }
+
+    Object get(int index){
+        if(numbers != null) return numbers[index];
+        return values[index];
+    }
+
+    void set(int index, Object value){
+        if(numbers != null){
+            if(value instanceof Double){
+                numbers[index] = (double) value;
+                return;
+            }
+            generalize();
+        }
+        values[index] = value;
+    }
+
+    void push(Object value){
+        if(size == capacity()) grow();
+        size++;
+        set(size - 1, value);
+    }
+
+    Object pop(){
+        Object value = get(size - 1);
+        if(values != null) values[size - 1] = null;
+        size--;
+        return value;
+    }
+
+    private int capacity(){
+        return numbers != null ? numbers.length : values.length;
+    }
+
+    private void grow(){
+        int capacity = Math.max(8, capacity() * 2);
+        if(numbers != null) numbers = Arrays.copyOf(numbers, capacity);
+        else values = Arrays.copyOf(values, capacity);
+    }
+
+    private void generalize(){
+        values = new Object[numbers.length];
+        for(int i = 0; i < size; i++){
+            values[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    void references(Deque<Object> values) {
+        if(this.values == null) return;
+        for(int i = 0; i < size; i++){
+            if(this.values[i] instanceof Owned) values.push(this.values[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for(int i = 0; i < size; i++){
+            if(i > 0) builder.append(", ");
+            builder.append(Interpreter.stringify(get(i)));
+        }
+        return builder.append("]").toString();
+    }
+}
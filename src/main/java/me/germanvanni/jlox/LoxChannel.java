@@ -0,0 +1,76 @@
+package me.germanvanni.jlox;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//a bounded queue between tasks: send() blocks while it is full and recv() while it is empty
+class LoxChannel {
+    //queues can't hold null, so it travels as this
+    private static final Object nil = new Object();
+
+    private final BlockingQueue<Object> queue;
+
+    LoxChannel(int capacity){
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    //waits until the run's deadline at most, line is where the wait is reported when it gets there
+    void send(Object value, final Budget budget, final int line){
+        Owned.release(value);
+        final Object item = value == null ? nil : value;
+        block(new ForkJoinPool.ManagedBlocker() {
+            private boolean sent = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                sent = queue.offer(item, budget.nanosLeft(line), TimeUnit.NANOSECONDS);
+                if(!sent) throw budget.pastDeadline(line);
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return sent || (sent = queue.offer(item));
+            }
+        });
+    }
+
+    Object recv(final Budget budget, final int line){
+        final Object[] received = new Object[1];
+        block(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                received[0] = queue.poll(budget.nanosLeft(line), TimeUnit.NANOSECONDS);
+                if(received[0] == null) throw budget.pastDeadline(line);
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return received[0] != null || (received[0] = queue.poll()) != null;
+            }
+        });
+
+        Object value = received[0] == nil ? null : received[0];
+        Owned.claim(value);
+        return value;
+    }
+
+    //lets the task pool start another worker while this one waits
+    private static void block(ForkJoinPool.ManagedBlocker blocker){
+        try{
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Execution was cancelled.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
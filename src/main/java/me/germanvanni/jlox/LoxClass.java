@@ -1,14 +1,16 @@
 package me.germanvanni.jlox;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
-class LoxClass implements LoxCallable{
+class LoxClass implements LoxCallable, Serializable {
+    private static final long serialVersionUID = 1L;
     final String name;
     final LoxClass superClass;
-    final Map<String, LoxFunction> methods;
+    final Map<Symbol, LoxFunction> methods;
 
-    LoxClass(String name, LoxClass superClass, Map<String, LoxFunction> methods){
+    LoxClass(String name, LoxClass superClass, Map<Symbol, LoxFunction> methods){
         this.name = name;
         this.methods = methods;
         this.superClass = superClass;
@@ -21,9 +23,11 @@ class LoxClass implements LoxCallable{
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        interpreter.allocate(Budget.instanceBytes);
         LoxInstance instance = new LoxInstance(this);
-        LoxFunction ctor = findMethod("ctor");
+        LoxFunction ctor = findMethod(Symbol.ctor);
         if(ctor != null){
+            interpreter.allocate(Budget.environmentBytes + Budget.closureBytes);
             ctor.bind(instance).call(interpreter, arguments);
         }
 
@@ -33,12 +37,12 @@ class LoxClass implements LoxCallable{
     @Override
     public int arity() {
 
-        LoxFunction ctor = findMethod("ctor");
+        LoxFunction ctor = findMethod(Symbol.ctor);
         if(ctor == null) return 0;
         return ctor.arity();
     }
 
-    LoxFunction findMethod(String name){
+    LoxFunction findMethod(Symbol name){
         if(methods.containsKey(name)){
             return methods.get(name);
         }
@@ -1,11 +1,13 @@
 package me.germanvanni.jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-class LoxFunction implements LoxCallable{
+class LoxFunction implements LoxCallable, Serializable {
+    private static final long serialVersionUID = 1L;
 
-    private final Stmt.Function declaration;
-    private final Environment closure;
+    final Stmt.Function declaration;
+    final Environment closure;
     private final boolean isConstructor;
 
     LoxFunction(Stmt.Function declaration, Environment closure, boolean isConstructor){
@@ -16,25 +18,39 @@ class LoxFunction implements LoxCallable{
     }
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(interpreter.globals);
+        interpreter.allocate(Budget.environmentBytes + Budget.variableBytes * arguments.size());
+        Environment environment = new Environment(closure);
         for(int i = 0; i < declaration.params.size(); i++){
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+            environment.define(declaration.params.get(i).symbol, arguments.get(i));
         }
 
+        Profiler.CallStack stack = interpreter.callStack();
+        if(stack != null) stack.push(declaration);
         try{
             interpreter.executeBlock(declaration.body, environment);
         }catch (Return returnValue){
-            if(isConstructor) return closure.getAt(0, "this");
+            if(Metrics.enabled) Metrics.returns.increment();
+            if(isConstructor) return closure.getAt(0, Symbol.thisKeyword);
 
             return returnValue.value;
+        }finally {
+            if(stack != null) stack.pop();
         }
-        if(isConstructor) return closure.getAt(0, "this");
+        if(isConstructor) return closure.getAt(0, Symbol.thisKeyword);
         return null;
     }
 
+    //called before the function runs on another task, the scopes it closes over become shared
+    void shareClosure(){
+        for(Environment scope = closure; scope != null; scope = scope.enclosing){
+            scope.share();
+        }
+    }
+
     LoxFunction bind(LoxInstance instace){
+        if(Metrics.enabled) Metrics.binds.increment();
         Environment environment = new Environment(closure);
-        environment.define("this", instace);
+        environment.define(Symbol.thisKeyword, instace);
         return new LoxFunction(declaration, environment, isConstructor);
     }
 
@@ -1,32 +1,60 @@
 package me.germanvanni.jlox;
 
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
-class LoxInstance {
+class LoxInstance extends Owned {
+    private static final long serialVersionUID = 1L;
     private LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    private final Map<Symbol, Object> fields = new HashMap<>();
 
     LoxInstance(LoxClass klass){
+        if(Metrics.enabled) Metrics.instances.increment();
         this.klass = klass;
     }
 
     Object get(Token name){
-        if(fields.containsKey(name.lexeme)){
-            return fields.get(name.lexeme);
+        checkOwner(name);
+        if(fields.containsKey(name.symbol)){
+            if(Metrics.enabled) Metrics.fieldHits.increment();
+            return fields.get(name.symbol);
         }
 
-        LoxFunction method = klass.findMethod(name.lexeme);
+        LoxFunction method = klass.findMethod(name.symbol);
         if(method != null){
+            if(Metrics.enabled) Metrics.methodHits.increment();
             return method.bind(this);
         }
         if(method != null) return method;
 
+        if(Metrics.enabled) Metrics.propertyMisses.increment();
         throw new RuntimeError(name, "undefined property '" + name.lexeme + "'.");
     }
 
-    void set(Token name, Object value){
-        fields.put(name.lexeme, value);
+    //true when the field is new
+    boolean set(Token name, Object value){
+        checkOwner(name);
+        int before = fields.size();
+        fields.put(name.symbol, value);
+        return fields.size() != before;
+    }
+
+    LoxClass klass(){
+        return klass;
+    }
+
+    //read without checking the owner, for the heap census
+    Collection<Object> fieldValues(){
+        return fields.values();
+    }
+
+    @Override
+    void references(Deque<Object> values) {
+        for(Object field : fields.values()){
+            if(field instanceof Owned) values.push(field);
+        }
     }
 
     @Override
@@ -0,0 +1,184 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Deque;
+import java.util.List;
+
+//a hash map with open addressing and linear probing. keys are compared like == compares them
+//in Lox, so strings and numbers match by value and everything else by identity.
+//hashes are kept next to the keys, a probe only calls equals() when they already match
+class LoxMap extends Owned {
+    private static final long serialVersionUID = 1L;
+    //stored in place of a null key, empty slots are the actual nulls
+    private enum Nil { key }
+
+    private transient Object[] keys;
+    private transient Object[] values;
+    private transient int[] hashes;
+    private transient int size;
+
+    LoxMap(){
+        clear(16);
+    }
+
+    int size(){
+        return size;
+    }
+
+    Object get(Object key){
+        Object wrapped = wrap(key);
+        int slot = slot(wrapped, hash(wrapped));
+        return keys[slot] == null ? null : values[slot];
+    }
+
+    boolean has(Object key){
+        Object wrapped = wrap(key);
+        return keys[slot(wrapped, hash(wrapped))] != null;
+    }
+
+    //true when the key is new
+    boolean set(Object key, Object value){
+        Object wrapped = wrap(key);
+        int hash = hash(wrapped);
+        int slot = slot(wrapped, hash);
+        if(keys[slot] != null){
+            values[slot] = value;
+            return false;
+        }
+
+        keys[slot] = wrapped;
+        hashes[slot] = hash;
+        values[slot] = value;
+        if(++size * 2 > keys.length) resize(keys.length * 2);
+        return true;
+    }
+
+    boolean delete(Object key){
+        Object wrapped = wrap(key);
+        int hole = slot(wrapped, hash(wrapped));
+        if(keys[hole] == null) return false;
+
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+
+        //no tombstones: entries after the hole that would no longer be reachable from
+        //their ideal slot are shifted back into it
+        int mask = keys.length - 1;
+        for(int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask){
+            int ideal = hashes[next] & mask;
+            boolean reachable = hole <= next ? (ideal > hole && ideal <= next) : (ideal > hole || ideal <= next);
+            if(reachable) continue;
+
+            keys[hole] = keys[next];
+            values[hole] = values[next];
+            hashes[hole] = hashes[next];
+            keys[next] = null;
+            values[next] = null;
+            hole = next;
+        }
+        return true;
+    }
+
+    LoxArray keys(){
+        LoxArray array = new LoxArray(0);
+        for(Object key : keys){
+            if(key != null) array.push(unwrap(key));
+        }
+        return array;
+    }
+
+    //every key followed by its value
+    void contents(List<Object> into){
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] == null) continue;
+            into.add(unwrap(keys[i]));
+            into.add(values[i]);
+        }
+    }
+
+    //index of the key, or of the empty slot it would go into
+    private int slot(Object key, int hash){
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while(keys[slot] != null){
+            if(hashes[slot] == hash && (keys[slot] == key || keys[slot].equals(key))) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(Object key){
+        //doubles holding small integers only differ in their high bits, so mix those down
+        int hash = key.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize(int capacity){
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        clear(capacity);
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldKeys[i] != null) set(unwrap(oldKeys[i]), oldValues[i]);
+        }
+    }
+
+    private void clear(int capacity){
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        size = 0;
+    }
+
+    private static Object wrap(Object key){
+        if(key instanceof Rope) return key.toString();
+        return key == null ? Nil.key : key;
+    }
+
+    private static Object unwrap(Object key){
+        return key == Nil.key ? null : key;
+    }
+
+    @Override
+    void references(Deque<Object> pending) {
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] instanceof Owned) pending.push(keys[i]);
+            if(values[i] instanceof Owned) pending.push(values[i]);
+        }
+    }
+
+    //identity hashes don't survive a snapshot, so entries are written as pairs and rehashed on the way in
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] == null) continue;
+            out.writeObject(unwrap(keys[i]));
+            out.writeObject(values[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int entries = in.readInt();
+        clear(16);
+        for(int i = 0; i < entries; i++){
+            set(in.readObject(), in.readObject());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] == null) continue;
+            if(builder.length() > 1) builder.append(", ");
+            builder.append(Interpreter.stringify(unwrap(keys[i])))
+                    .append(": ")
+                    .append(Interpreter.stringify(values[i]));
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -0,0 +1,89 @@
+package me.germanvanni.jlox;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//what spawn() returns: a function running on the task pool, whose result await() waits for
+class LoxTask {
+    private final Spawned spawned;
+    private final FutureTask<Object> future;
+
+    LoxTask(Spawned spawned, final Callable<Object> body){
+        this.spawned = spawned;
+        this.future = new FutureTask<>(() -> {
+            //an interrupt left over from a task cancelled on this worker before isn't meant for this one.
+            //cancelling this task before it got here has cancelled its run too, which stops it anyway
+            Thread.interrupted();
+            Object result = body.call();
+            //it went fine, so there is nothing left to tell the run
+            spawned.remove(this);
+            return result;
+        });
+    }
+
+    void start(Executor pool){
+        spawned.add(this);
+        pool.execute(future);
+    }
+
+    //waits until the run's deadline at most, line is where the wait is reported when it gets there
+    Object await(Budget budget, int line){
+        spawned.remove(this);
+        Object result;
+        try{
+            result = result(budget.nanosLeft(line));
+        } catch (TimeoutException e){
+            //still the run's to wait for, or to cancel
+            spawned.add(this);
+            throw budget.pastDeadline(line);
+        }
+        Owned.claim(result);
+        return result;
+    }
+
+    //called when the run ends without anybody having awaited the task
+    void finish(Interpreter interpreter){
+        try{
+            result(Long.MAX_VALUE);
+        } catch (TimeoutException e){
+            //not without a limit on the wait
+            throw new AssertionError(e);
+        } catch (RuntimeError e){
+            interpreter.runtimeError(e);
+        }
+    }
+
+    boolean isDone(){
+        return future.isDone();
+    }
+
+    //interrupts it if it is waiting on a channel, its run being cancelled stops it otherwise
+    void cancel(){
+        future.cancel(true);
+    }
+
+    private Object result(long nanos) throws TimeoutException{
+        try{
+            return future.get(nanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Execution was cancelled.");
+        } catch (ExecutionException e){
+            //errors inside the task surface where it is awaited, with their original line
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new NativeError(String.valueOf(cause));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,48 @@
+package me.germanvanni.jlox;
+
+import java.util.List;
+
+//dict(), mapHas(map, key), mapDelete(map, key) and mapKeys(map). entries are read and written with m[key],
+//len(map) counts them
+final class MapNatives {
+    private MapNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("dict", 0, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        interpreter.allocate(Budget.mapBytes);
+                        return new LoxMap();
+                    }
+                },
+                new NativeFunction("mapHas", 2, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return map(arguments.get(0), "mapHas").has(arguments.get(1));
+                    }
+                },
+                new NativeFunction("mapDelete", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return map(arguments.get(0), "mapDelete").delete(arguments.get(1));
+                    }
+                },
+                new NativeFunction("mapKeys", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        LoxMap map = map(arguments.get(0), "mapKeys");
+                        interpreter.allocate(Budget.arrayBytes + Budget.elementBytes * map.size());
+                        return map.keys();
+                    }
+                });
+    }
+
+    static LoxMap map(Object value, String function){
+        if(!(value instanceof LoxMap)) throw new NativeError(function + "() expects a map.");
+        LoxMap map = (LoxMap) value;
+        map.checkOwner();
+        return map;
+    }
+}
@@ -0,0 +1,105 @@
+package me.germanvanni.jlox;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+//runtime counters, off unless the JVM runs with -Dlox.metrics=true. every counting site is guarded by
+//enabled, a static final the JIT folds away, so disabled counters cost nothing. when enabled the counters
+//are published over JMX and printed to stderr when the JVM exits
+final class Metrics implements RuntimeMetricsMXBean {
+    static final boolean enabled = Boolean.getBoolean("lox.metrics");
+
+    static final LongAdder environments = new LongAdder();
+    static final LongAdder binds = new LongAdder();
+    static final LongAdder instances = new LongAdder();
+    //property reads, by what they found
+    static final LongAdder fieldHits = new LongAdder();
+    static final LongAdder methodHits = new LongAdder();
+    static final LongAdder propertyMisses = new LongAdder();
+    //function bodies left through a return statement, which unwinds with an exception
+    static final LongAdder returns = new LongAdder();
+    //arithmetic by operand types: numbers, two strings, or a string and a number
+    static final LongAdder numberArithmetic = new LongAdder();
+    static final LongAdder stringConcatenations = new LongAdder();
+    static final LongAdder mixedConcatenations = new LongAdder();
+
+    static {
+        if(enabled){
+            try{
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(),
+                        new javax.management.ObjectName("me.germanvanni.jlox:type=RuntimeMetrics"));
+            } catch (Exception e){
+                System.err.println("Could not register the runtime metrics over JMX: " + e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(System.err), "lox-metrics"));
+        }
+    }
+
+    private Metrics(){
+    }
+
+    static void dump(PrintStream out){
+        out.println("Runtime metrics:");
+        out.println(String.format("  %-24s %d", "environments", environments.sum()));
+        out.println(String.format("  %-24s %d", "binds", binds.sum()));
+        out.println(String.format("  %-24s %d", "instances", instances.sum()));
+        out.println(String.format("  %-24s %d", "field hits", fieldHits.sum()));
+        out.println(String.format("  %-24s %d", "method hits", methodHits.sum()));
+        out.println(String.format("  %-24s %d", "property misses", propertyMisses.sum()));
+        out.println(String.format("  %-24s %d", "returns", returns.sum()));
+        out.println(String.format("  %-24s %d", "number arithmetic", numberArithmetic.sum()));
+        out.println(String.format("  %-24s %d", "string concatenations", stringConcatenations.sum()));
+        out.println(String.format("  %-24s %d", "mixed concatenations", mixedConcatenations.sum()));
+    }
+
+    @Override
+    public long getEnvironments() {
+        return environments.sum();
+    }
+
+    @Override
+    public long getBinds() {
+        return binds.sum();
+    }
+
+    @Override
+    public long getInstances() {
+        return instances.sum();
+    }
+
+    @Override
+    public long getFieldHits() {
+        return fieldHits.sum();
+    }
+
+    @Override
+    public long getMethodHits() {
+        return methodHits.sum();
+    }
+
+    @Override
+    public long getPropertyMisses() {
+        return propertyMisses.sum();
+    }
+
+    @Override
+    public long getReturns() {
+        return returns.sum();
+    }
+
+    @Override
+    public long getNumberArithmetic() {
+        return numberArithmetic.sum();
+    }
+
+    @Override
+    public long getStringConcatenations() {
+        return stringConcatenations.sum();
+    }
+
+    @Override
+    public long getMixedConcatenations() {
+        return mixedConcatenations.sum();
+    }
+}
@@ -0,0 +1,11 @@
+package me.germanvanni.jlox;
+
+//thrown by natives, which don't know where they were called from.
+//the call expression turns it into a RuntimeError pointing at the call
+class NativeError extends RuntimeException{
+    private static final long serialVersionUID = 1L;
+
+    NativeError(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package me.germanvanni.jlox;
+
+//a global function implemented in Java
+abstract class NativeFunction implements LoxCallable{
+    final String name;
+    private final int arity;
+    //true when calling it only reads its arguments or allocates, so bulk operations may call it from several threads
+    final boolean pure;
+
+    NativeFunction(String name, int arity){
+        this(name, arity, false);
+    }
+
+    NativeFunction(String name, int arity, boolean pure){
+        this.name = name;
+        this.arity = arity;
+        this.pure = pure;
+    }
+
+    static void define(Environment globals, NativeFunction... functions){
+        for(NativeFunction function : functions){
+            globals.define(Symbol.of(function.name), function);
+        }
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+}
@@ -0,0 +1,124 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+//where print writes. lines are encoded straight into a byte buffer that is handed to the stream when
+//it fills up, when flush() is called (on exit and before runtime errors are reported) and, if asked
+//for, after every line. tasks of one script print through the same Output, one line at a time
+final class Output {
+    static final int defaultCapacity = 1 << 16;
+    private static final byte[] newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream sink;
+    private final byte[] buffer;
+    private final boolean flushOnNewline;
+    //whatever the stream's readers decode it with, the caller knows which
+    private final Charset charset;
+    //ASCII characters can be copied byte by byte in these, anything else goes through the encoder
+    private final boolean asciiCompatible;
+    private int count = 0;
+
+    Output(OutputStream sink, Charset charset, boolean flushOnNewline){
+        this(sink, defaultCapacity, charset, flushOnNewline);
+    }
+
+    Output(OutputStream sink, int capacity, Charset charset, boolean flushOnNewline){
+        this.sink = sink;
+        this.buffer = new byte[capacity];
+        this.charset = charset;
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII);
+        this.flushOnNewline = flushOnNewline;
+    }
+
+    synchronized void println(Object value){
+        if(value instanceof Double) writeNumber((double) value);
+        else writeString(Interpreter.stringify(value));
+        writeBytes(newline, 0, newline.length);
+
+        if(flushOnNewline) flush();
+    }
+
+    synchronized void flush(){
+        drain();
+        try{
+            sink.flush();
+        } catch (IOException e){
+            //like PrintStream, a closed or broken stream doesn't stop the script
+        }
+    }
+
+    private void writeNumber(double number){
+        long whole = (long) number;
+        //the whole numbers stringify prints without going through Double.toString
+        if(whole != number || Math.abs(number) >= 1e7 || (number == 0 && 1 / number < 0)){
+            writeString(Interpreter.stringify(number));
+            return;
+        }
+
+        if(count + 8 > buffer.length) drain();
+        if(whole < 0){
+            buffer[count++] = '-';
+            whole = -whole;
+        }
+        int end = count + digits(whole);
+        for(int i = end - 1; i >= count; i--){
+            buffer[i] = (byte) ('0' + whole % 10);
+            whole /= 10;
+        }
+        count = end;
+    }
+
+    private static int digits(long value){
+        int digits = 1;
+        while(value >= 10){
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void writeString(String string){
+        if(!asciiCompatible){
+            byte[] bytes = string.getBytes(charset);
+            writeBytes(bytes, 0, bytes.length);
+            return;
+        }
+
+        int length = string.length();
+        for(int i = 0; i < length; i++){
+            char c = string.charAt(i);
+            if(c >= 0x80){
+                byte[] bytes = string.substring(i).getBytes(charset);
+                writeBytes(bytes, 0, bytes.length);
+                return;
+            }
+            if(count == buffer.length) drain();
+            buffer[count++] = (byte) c;
+        }
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length){
+        while(length > 0){
+            if(count == buffer.length) drain();
+            int chunk = Math.min(length, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void drain(){
+        if(count == 0) return;
+        try{
+            sink.write(buffer, 0, count);
+        } catch (IOException e){
+            //see flush()
+        }
+        count = 0;
+    }
+}
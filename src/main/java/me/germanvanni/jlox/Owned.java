@@ -0,0 +1,77 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//a mutable object a script can create. only the task (thread) owning it may touch it,
+//ownership moves with values sent through a channel or returned from a task and is null while in flight
+abstract class Owned implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String notOwned = "This object belongs to another task, " +
+            "send it through a channel or return it from the task to use it here.";
+
+    //set on pool workers of a bulk operation: they may read what the waiting caller owns
+    private static final ThreadLocal<Thread> lender = new ThreadLocal<>();
+
+    private transient Thread owner = Thread.currentThread();
+
+    void checkOwner(Token token){
+        if(owner != Thread.currentThread() && !isLent()) throw new RuntimeError(token, notOwned);
+    }
+
+    void checkOwner(){
+        if(owner != Thread.currentThread() && !isLent()) throw new NativeError(notOwned);
+    }
+
+    private boolean isLent(){
+        return owner != null && lender.get() == owner;
+    }
+
+    //lets the current thread act for owner until the returned previous lender is restored
+    static Thread borrowFrom(Thread owner){
+        Thread previous = lender.get();
+        lender.set(owner);
+        return previous;
+    }
+
+    static void restore(Thread previous){
+        lender.set(previous);
+    }
+
+    //pushes the values held by this object, ownership is transferred through them too
+    abstract void references(Deque<Object> values);
+
+    //gives up the objects reachable from value that the current task owns
+    static void release(Object value){
+        transfer(value, Thread.currentThread(), null);
+    }
+
+    //takes over the released objects reachable from value
+    static void claim(Object value){
+        transfer(value, null, Thread.currentThread());
+    }
+
+    private static void transfer(Object value, Thread from, Thread to){
+        Deque<Object> pending = new ArrayDeque<>();
+        if(value instanceof Owned) pending.push(value);
+
+        while(!pending.isEmpty()){
+            Object next = pending.pop();
+            if(!(next instanceof Owned)) continue;
+
+            Owned object = (Owned) next;
+            if(object.owner != from) continue;
+            object.owner = to;
+            object.references(pending);
+        }
+    }
+
+    //objects read from a snapshot belong to whoever boots it
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        owner = Thread.currentThread();
+    }
+}
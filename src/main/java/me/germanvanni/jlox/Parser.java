@@ -7,10 +7,12 @@ import java.util.List;
 import  static me.germanvanni.jlox.TokenType.*;
 public class Parser {
     private final List<Token> tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
 
-    Parser(List<Token> tokens){
+    Parser(List<Token> tokens, ErrorReporter reporter){
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
     private static class ParseError extends RuntimeException{
@@ -26,13 +28,20 @@ public class Parser {
     }
 
     private Stmt statement(){
-        if(match(PRINT)) return printStatement();
-        if(match(LEFT_BRACE)) return new Stmt.Block(block());
-        if(match(IF)) return ifStatement();
-        if(match(WHILE)) return whileStatement();
-        if(match(RETURN)) return returnStatement();
-        if(match(FOR)) return forStatement();
-        return expressionStatement();
+        int line = peek().line;
+        if(match(PRINT)) return at(line, printStatement());
+        if(match(LEFT_BRACE)) return at(line, new Stmt.Block(block()));
+        if(match(IF)) return at(line, ifStatement());
+        if(match(WHILE)) return at(line, whileStatement());
+        if(match(RETURN)) return at(line, returnStatement());
+        if(match(FOR)) return at(line, forStatement());
+        return at(line, expressionStatement());
+    }
+
+    //statements the parser puts together keep the line they were written on
+    private static <T extends Stmt> T at(int line, T statement){
+        if(statement != null && statement.line == 0) statement.line = line;
+        return statement;
     }
 
 
@@ -51,14 +60,15 @@ public class Parser {
     }
 
     private Stmt forStatement(){
+        int line = previous().line;
         consume(LEFT_PAREN, "Expected '(' after for keyword");
         Stmt initializer;
         if(match(SEMICOLON)){
             initializer = null;
         } else if(match(VAR)){
-            initializer = varDeclaration();
+            initializer = at(line, varDeclaration());
         } else {
-            initializer = expressionStatement();
+            initializer = at(line, expressionStatement());
         }
 
         Expr condition = null;
@@ -77,17 +87,17 @@ public class Parser {
         Stmt body = statement();
 
         if(increment != null){
-            body = new Stmt.Block(
+            body = at(line, new Stmt.Block(
                     Arrays.asList(
                             body,
-                            new Stmt.Expression(increment)));
+                            at(line, new Stmt.Expression(increment)))));
         }
 
         if(condition == null) condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = at(line, new Stmt.While(condition, body));
 
         if(initializer != null){
-            body = new Stmt.Block(Arrays.asList(initializer));
+            body = new Stmt.Block(Arrays.asList(initializer, body));
         }
 
         return body;
@@ -163,6 +173,9 @@ public class Parser {
             } else if (expr instanceof  Expr.Get){
                 Expr.Get get = (Expr.Get)expr;
                 return new Expr.Set(get.object, get.name, value);
+            } else if (expr instanceof Expr.Index){
+                Expr.Index index = (Expr.Index)expr;
+                return new Expr.IndexSet(index.object, index.bracket, index.index, value);
             }
 
             error(equals, "Invalid assignment target");
@@ -197,9 +210,10 @@ public class Parser {
 
     private Stmt declaration(){
         try{
-            if(match(CLASS)) return classDeclaration();
-            if(match(VAR)) return varDeclaration();
-            if(match(FN)) return function("function");
+            int line = peek().line;
+            if(match(CLASS)) return at(line, classDeclaration());
+            if(match(VAR)) return at(line, varDeclaration());
+            if(match(FN)) return at(line, function("function"));
             return statement();
         } catch(ParseError e){
             synchronize();
@@ -221,7 +235,7 @@ public class Parser {
         List<Stmt.Function> methods = new ArrayList<>();
 
         while(!check(RIGHT_BRACE) && !isAtEnd()){
-            methods.add(function("method"));
+            methods.add(at(peek().line, function("method")));
         }
         consume(RIGHT_BRACE, "Expected '}' after class body.");
 
@@ -313,6 +327,10 @@ public class Parser {
             } else if(match(DOT)){
                 Token name = consume(IDENTIFIER, "Epected property name after '.'.");
                 expr = new Expr.Get(expr, name);
+            } else if(match(LEFT_BRACKET)){
+                Expr index = expression();
+                Token bracket = consume(RIGHT_BRACKET, "Expected ']' after index.");
+                expr = new Expr.Index(expr, bracket, index);
             }
             else break;
         }
@@ -405,7 +423,7 @@ public class Parser {
     }
 
     private ParseError error(Token token, String message){
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -0,0 +1,164 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//samples the Lox call stack of every thread running the script from a background thread. functions
+//push themselves on a shadow stack while profiling (see LoxFunction.call), the sampler only reads it.
+//the result is a collapsed-stack file for flame graph tools and a self/total table per function
+final class Profiler {
+    private static final String script = "<script>";
+    private static final String task = "<task>";
+
+    private final Map<Thread, CallStack> stacks = new ConcurrentHashMap<>();
+    private final Thread main = Thread.currentThread();
+    private final long intervalNanos;
+    private final Thread sampler;
+    private volatile boolean running = true;
+
+    //only touched by the sampler until it is stopped
+    private final Map<String, long[]> collapsed = new HashMap<>();
+    private final Map<String, long[]> self = new HashMap<>();
+    private final Map<String, long[]> total = new HashMap<>();
+    private long samples = 0;
+
+    private Profiler(long intervalNanos){
+        this.intervalNanos = intervalNanos;
+        this.sampler = new Thread(this::sample, "lox-profiler");
+        this.sampler.setDaemon(true);
+    }
+
+    //starts profiling the interpreter and every task it spawns
+    static Profiler start(Interpreter interpreter, long interval, TimeUnit unit){
+        Profiler profiler = new Profiler(unit.toNanos(interval));
+        interpreter.profiler = profiler;
+        profiler.sampler.start();
+        return profiler;
+    }
+
+    //the shadow stack of the current thread
+    CallStack stack(){
+        return stacks.computeIfAbsent(Thread.currentThread(), thread -> new CallStack());
+    }
+
+    void stop(){
+        running = false;
+        try{
+            sampler.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample(){
+        Set<String> seen = new HashSet<>();
+        StringBuilder key = new StringBuilder();
+        stacks.putIfAbsent(main, new CallStack());
+
+        while(running){
+            LockSupport.parkNanos(intervalNanos);
+            for(Map.Entry<Thread, CallStack> entry : stacks.entrySet()){
+                int depth = entry.getValue().depth;
+                Stmt.Function[] frames = entry.getValue().frames;
+                boolean isMain = entry.getKey() == main;
+                //pool threads are only worth a sample while they run Lox code
+                if(depth == 0 && !isMain) continue;
+
+                String root = isMain ? script : task;
+                key.setLength(0);
+                key.append(root);
+                seen.clear();
+                seen.add(root);
+                count(total, root);
+                String top = root;
+                for(int i = 0; i < depth; i++){
+                    Stmt.Function frame = frames[i];
+                    if(frame == null) continue;
+                    top = label(frame);
+                    key.append(';').append(top);
+                    //recursion counts once towards the total of a function
+                    if(seen.add(top)) count(total, top);
+                }
+                count(self, top);
+                count(collapsed, key.toString());
+                samples++;
+            }
+        }
+    }
+
+    private static String label(Stmt.Function function){
+        return function.name.lexeme + ":" + function.name.line;
+    }
+
+    private static void count(Map<String, long[]> counts, String key){
+        long[] count = counts.get(key);
+        if(count == null) counts.put(key, new long[]{1});
+        else count[0]++;
+    }
+
+    //one "frame;frame;frame count" line per distinct stack, what flamegraph.pl and speedscope read
+    void writeCollapsed(Path path) throws IOException{
+        try(Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)){
+            for(Map.Entry<String, long[]> entry : collapsed.entrySet()){
+                writer.write(entry.getKey() + " " + entry.getValue()[0] + "\n");
+            }
+        }
+    }
+
+    void printTable(PrintStream out){
+        List<String> functions = new ArrayList<>(total.keySet());
+        functions.sort((a, b) -> Long.compare(countOf(self, b), countOf(self, a)));
+
+        double millisPerSample = intervalNanos / 1e6;
+        out.println(samples + " samples, one every " + millisPerSample + "ms");
+        out.println(String.format("%8s %7s %8s %7s  %s", "self ms", "self %", "total ms", "total %", "function"));
+        for(String function : functions){
+            long selfCount = countOf(self, function);
+            long totalCount = countOf(total, function);
+            out.println(String.format("%8.0f %6.1f%% %8.0f %6.1f%%  %s",
+                    selfCount * millisPerSample, percent(selfCount), totalCount * millisPerSample, percent(totalCount), function));
+        }
+    }
+
+    private double percent(long count){
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+
+    private static long countOf(Map<String, long[]> counts, String key){
+        long[] count = counts.get(key);
+        return count == null ? 0 : count[0];
+    }
+
+    //written by the thread it belongs to, read by the sampler. an entry is stored before the depth
+    //covering it is published, so the sampler never sees a frame that wasn't pushed (it may miss a pop)
+    static final class CallStack {
+        private volatile Stmt.Function[] frames = new Stmt.Function[64];
+        private volatile int depth = 0;
+
+        void push(Stmt.Function function){
+            int top = depth;
+            Stmt.Function[] current = frames;
+            if(top == current.length) frames = current = Arrays.copyOf(current, top * 2);
+            current[top] = function;
+            depth = top + 1;
+        }
+
+        void pop(){
+            depth = depth - 1;
+        }
+    }
+}
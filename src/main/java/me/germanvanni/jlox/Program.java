@@ -0,0 +1,79 @@
+package me.germanvanni.jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//a scanned, parsed and resolved script. it is never modified after compile(), so one program
+//can be shared between threads and run any number of times, each run in its own interpreter
+public final class Program {
+    final List<Stmt> statements;
+    final Map<Expr, Integer> locals;
+
+    private Program(List<Stmt> statements, Map<Expr, Integer> locals){
+        this.statements = statements;
+        this.locals = locals;
+    }
+
+    public static Program compile(String source){
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream errors = new PrintStream(messages, true);
+
+        Program program = compile(source, new ErrorReporter(errors, errors));
+        if(program == null) throw new CompileError(messages.toString().trim());
+        return program;
+    }
+
+    //returns null once errors have been reported
+    static Program compile(String source, ErrorReporter reporter){
+        List<Token> tokens = new Scanner(source, reporter).scanTokens();
+        List<Stmt> statements = new Parser(tokens, reporter).parse();
+        if(reporter.hadError) return null;
+
+        Map<Expr, Integer> locals = new HashMap<>();
+        new Resolver(locals, reporter).resolve(statements);
+        if(reporter.hadError) return null;
+
+        return new Program(Collections.unmodifiableList(statements), Collections.unmodifiableMap(locals));
+    }
+
+    //runs the program with fresh globals, returning 0 or, after a runtime error, the 70 runFile exits with.
+    //print encodes in the platform's default charset, what a PrintStream created without one uses
+    public int run(PrintStream out, PrintStream err){
+        return run(out, err, Limits.none());
+    }
+
+    //same, but a run going over its limits stops with a LimitExceededError instead, or a runtime error
+    //when it allocates more memory than allowed
+    public int run(PrintStream out, PrintStream err, Limits limits){
+        return run(out, err, Charset.defaultCharset(), limits);
+    }
+
+    //for an out created with another charset, which print must encode in too
+    public int run(PrintStream out, PrintStream err, Charset charset, Limits limits){
+        return run(out, err, charset, new Budget(limits));
+    }
+
+    //the budget also tells what the run allocated
+    int run(PrintStream out, PrintStream err, Charset charset, Budget budget){
+        ErrorReporter reporter = new ErrorReporter(err, err);
+        Output output = new Output(out, charset, false);
+        Interpreter interpreter = new Interpreter(reporter, output, locals);
+        interpreter.budget = budget;
+        try{
+            interpreter.interpretScript(statements);
+        } catch (StackOverflowError e){
+            output.flush();
+            err.println("Stack overflow.");
+            reporter.hadRuntimeError = true;
+        } finally {
+            output.flush();
+            interpreter.returnAllowance();
+        }
+        return reporter.hadRuntimeError ? 70 : 0;
+    }
+}
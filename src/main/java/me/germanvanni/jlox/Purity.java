@@ -0,0 +1,203 @@
+package me.germanvanni.jlox;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//decides whether a function may run on several threads at once: it can read anything, but only write
+//its own locals, and only call pure natives or functions it can see (globals, captured) that are pure too
+class Purity implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+    private final Map<Expr, Integer> locals;
+    private final Environment globals;
+    private final Set<Stmt.Function> checking = new HashSet<>();
+
+    private Environment closure;
+    //scopes opened since entering the function being checked, anything resolved further out is not its own
+    private int depth;
+
+    private Purity(Interpreter interpreter){
+        this.locals = interpreter.locals;
+        this.globals = interpreter.globals;
+    }
+
+    static boolean isPure(Interpreter interpreter, LoxCallable callee){
+        if(callee instanceof NativeFunction) return ((NativeFunction) callee).pure;
+        if(callee instanceof LoxFunction) return new Purity(interpreter).check((LoxFunction) callee);
+        return false;
+    }
+
+    private boolean check(LoxFunction function){
+        //a recursive call is as pure as the function already being checked
+        if(!checking.add(function.declaration)) return true;
+
+        Environment enclosingClosure = closure;
+        int enclosingDepth = depth;
+        closure = function.closure;
+        depth = 1;
+        try{
+            return checkAll(function.declaration.body);
+        } finally {
+            closure = enclosingClosure;
+            depth = enclosingDepth;
+        }
+    }
+
+    private boolean checkAll(List<Stmt> statements){
+        for(Stmt statement : statements){
+            if(!statement.accept(this)) return false;
+        }
+        return true;
+    }
+
+    private boolean check(Expr expr){
+        return expr == null || expr.accept(this);
+    }
+
+    private boolean isOwnLocal(Expr expr){
+        Integer distance = locals.get(expr);
+        return distance != null && distance < depth;
+    }
+
+    //the current value of a name declared outside the function, null when there is none yet
+    private Object outerValue(Expr.Variable expr){
+        Integer distance = locals.get(expr);
+        if(distance != null) return closure.getAt(distance - depth, expr.name.symbol);
+        try{
+            return globals.get(expr.name);
+        } catch (RuntimeError e){
+            return null;
+        }
+    }
+
+    @Override
+    public Boolean visitAssignExpr(Expr.Assign expr) {
+        return isOwnLocal(expr) && check(expr.value);
+    }
+
+    @Override
+    public Boolean visitCallExpr(Expr.Call expr) {
+        for(Expr argument : expr.arguments){
+            if(!check(argument)) return false;
+        }
+        //methods, locals holding functions and class constructors are not followed
+        if(!(expr.callee instanceof Expr.Variable) || isOwnLocal(expr.callee)) return false;
+
+        Object callee = outerValue((Expr.Variable) expr.callee);
+        if(callee instanceof NativeFunction) return ((NativeFunction) callee).pure;
+        if(callee instanceof LoxFunction) return check((LoxFunction) callee);
+        return false;
+    }
+
+    @Override
+    public Boolean visitGetExpr(Expr.Get expr) {
+        return check(expr.object);
+    }
+
+    @Override
+    public Boolean visitBinaryExpr(Expr.Binary expr) {
+        return check(expr.left) && check(expr.right);
+    }
+
+    @Override
+    public Boolean visitGroupingExpr(Expr.Grouping expr) {
+        return check(expr.expression);
+    }
+
+    @Override
+    public Boolean visitLiteralExpr(Expr.Literal expr) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitUnaryExpr(Expr.Unary expr) {
+        return check(expr.right);
+    }
+
+    @Override
+    public Boolean visitVariableExpr(Expr.Variable expr) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitLogicalExpr(Expr.Logical expr) {
+        return check(expr.left) && check(expr.right);
+    }
+
+    @Override
+    public Boolean visitSetExpr(Expr.Set expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitThisExpr(Expr.This expr) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitSuperExpr(Expr.Super expr) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitIndexExpr(Expr.Index expr) {
+        return check(expr.object) && check(expr.index);
+    }
+
+    @Override
+    public Boolean visitIndexSetExpr(Expr.IndexSet expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return check(stmt.condition) && stmt.thenBranch.accept(this)
+                && (stmt.elseBranch == null || stmt.elseBranch.accept(this));
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        depth++;
+        try{
+            return checkAll(stmt.statements);
+        } finally {
+            depth--;
+        }
+    }
+
+    @Override
+    public Boolean visitClassStmt(Stmt.Class stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+        return check(stmt.expression);
+    }
+
+    @Override
+    public Boolean visitFunctionStmt(Stmt.Function stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitPrintStmt(Stmt.Print stmt) {
+        //output from several threads would interleave
+        return false;
+    }
+
+    @Override
+    public Boolean visitReturnStmt(Stmt.Return stmt) {
+        return check(stmt.value);
+    }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        return check(stmt.initializer);
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return check(stmt.condition) && stmt.body.accept(this);
+    }
+}
@@ -0,0 +1,146 @@
+package me.germanvanni.jlox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+//lox --records script.lox [input] [delimiter]: runs the script once, then passes every record of the
+//input (stdin when missing or "-") to the handle(record) function it defines, and calls finish() at the
+//end if there is one. records are lines by default; input is read in batches, files are memory mapped
+class Records {
+    private static final int readBatch = 1 << 16;
+    private static final long mapBatch = 1L << 26;
+
+    private final Interpreter interpreter;
+    private final LoxFunction handler;
+    private final byte delimiter;
+    private final Charset charset = Charset.defaultCharset();
+    //bytes of a record that started in an earlier batch
+    private byte[] carry = new byte[256];
+    private int carried = 0;
+
+    private Records(Interpreter interpreter, LoxFunction handler, byte delimiter){
+        this.interpreter = interpreter;
+        this.handler = handler;
+        this.delimiter = delimiter;
+    }
+
+    //returns the exit code runFile would use
+    static int run(Interpreter interpreter, String source, String input, byte delimiter) throws IOException{
+        Lox.run(interpreter, source);
+        if(interpreter.reporter.hadError) return 65;
+        if(interpreter.reporter.hadRuntimeError) return 70;
+
+        Object handler = interpreter.globals.values().get(Symbol.of("handle"));
+        if(!(handler instanceof LoxFunction) || ((LoxFunction) handler).arity() != 1){
+            System.err.println("A records script must define fn handle(record).");
+            return 65;
+        }
+        Object finish = interpreter.globals.values().get(Symbol.of("finish"));
+
+        Records records = new Records(interpreter, (LoxFunction) handler, delimiter);
+        boolean failed = true;
+        try{
+            if(input == null || input.equals("-")) records.read(System.in);
+            else records.map(Paths.get(input));
+            records.end();
+            if(finish instanceof LoxFunction && ((LoxFunction) finish).arity() == 0){
+                LoxFunction function = (LoxFunction) finish;
+                interpreter.callFromHost(function, Collections.emptyList(), function.declaration.name);
+            }
+            //tasks the handler spawned finish before the output is
+            interpreter.awaitTasks();
+            failed = interpreter.reporter.hadRuntimeError;
+        } catch (RuntimeError e){
+            interpreter.runtimeError(e);
+        } finally {
+            if(failed) interpreter.cancelTasks();
+            interpreter.out.flush();
+        }
+        return failed ? 70 : 0;
+    }
+
+    private void read(InputStream in) throws IOException{
+        byte[] batch = new byte[readBatch];
+        int read;
+        while((read = in.read(batch)) > 0){
+            split(ByteBuffer.wrap(batch, 0, read));
+        }
+    }
+
+    private void map(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            for(long position = 0; position < size; position += mapBatch){
+                MappedByteBuffer batch = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapBatch, size - position));
+                split(batch);
+            }
+        }
+    }
+
+    private void split(ByteBuffer batch){
+        int start = batch.position();
+        int limit = batch.limit();
+        for(int i = start; i < limit; i++){
+            if(batch.get(i) != delimiter) continue;
+            record(batch, start, i);
+            start = i + 1;
+        }
+        append(batch, start, limit);
+    }
+
+    private void record(ByteBuffer batch, int from, int to){
+        //a record read from stdin in one piece is decoded straight out of the batch
+        if(carried == 0 && batch.hasArray()){
+            emit(batch.array(), batch.arrayOffset() + from, to - from);
+            return;
+        }
+        append(batch, from, to);
+        emitCarried();
+    }
+
+    private void append(ByteBuffer batch, int from, int to){
+        int length = to - from;
+        if(carried + length > carry.length) carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carried + length));
+        //one bulk copy, a mapped batch copies out of the page cache in one go. the cast keeps it
+        //running on Java 8, where ByteBuffer doesn't override position(int) yet
+        ((Buffer) batch).position(from);
+        batch.get(carry, carried, length);
+        carried += length;
+    }
+
+    //a last record without a delimiter after it still counts
+    private void end(){
+        if(carried > 0) emitCarried();
+    }
+
+    private void emitCarried(){
+        int length = carried;
+        carried = 0;
+        emit(carry, 0, length);
+    }
+
+    private void emit(byte[] bytes, int offset, int length){
+        if(delimiter == '\n' && length > 0 && bytes[offset + length - 1] == '\r') length--;
+        //errors in the call itself are reported at the declaration of handle
+        interpreter.callFromHost(handler, Collections.singletonList(new String(bytes, offset, length, charset)),
+                handler.declaration.name);
+    }
+
+    static byte delimiter(String text){
+        if(text.length() == 1 && text.charAt(0) < 0x80) return (byte) text.charAt(0);
+        if(text.equals("\\t")) return '\t';
+        if(text.equals("\\0")) return 0;
+        throw new IllegalArgumentException("The delimiter must be a single ASCII character, \\t or \\0.");
+    }
+
+}
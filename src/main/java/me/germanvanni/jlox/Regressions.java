@@ -0,0 +1,242 @@
+package me.germanvanni.jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//lox --regress programs/ results.txt [baseline.txt] [runs] [threshold%]: runs every .lox program of a
+//directory under each engine, once to warm up and runs more times timed. every run must print what the
+//reference tree-walker printed and exit the same way. the median of each program and engine goes to the
+//results file, in the same format the baseline is read from, and a median more than threshold percent
+//over the baseline is a regression. exits with 1 on any mismatch or regression.
+//
+//engines run one after the other, the reference first: once the instrumented interpreter is loaded the
+//JIT can no longer assume the interpreter hooks have a single implementation
+final class Regressions {
+    private static final int defaultRuns = 5;
+    private static final double defaultThreshold = 10;
+    //deeply recursive programs need more than the default stack
+    private static final long stackSize = 512L * 1024 * 1024;
+    private static final Pattern baselineLine = Pattern.compile("(.+?)\\s+(\\S+)\\s+(\\S+)\\s*");
+
+    //what a run printed and how it ended
+    private static final class Run {
+        final int exitCode;
+        final String output;
+
+        Run(int exitCode, String output){
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        boolean matches(Run other){
+            return exitCode == other.exitCode && output.equals(other.output);
+        }
+    }
+
+    private interface Engine {
+        String name();
+
+        Run run(Program program) throws Exception;
+    }
+
+    private static final Engine treeWalk = new Engine() {
+        @Override
+        public String name() {
+            return "tree-walk";
+        }
+
+        @Override
+        public Run run(Program program) throws UnsupportedEncodingException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(output, false, "UTF-8");
+            int exitCode = program.run(out, out, StandardCharsets.UTF_8, Limits.none());
+            return new Run(exitCode, output.toString("UTF-8"));
+        }
+    };
+
+    //through a ScriptPool task, the way a host embeds the interpreter. its thread gets the stack the others
+    //run on, so deep recursion ends the same way in every engine
+    private static Engine scriptPool(final ScriptPool pool){
+        return new Engine() {
+            @Override
+            public String name() {
+                return "script-pool";
+            }
+
+            @Override
+            public Run run(Program program) throws InterruptedException, ExecutionException {
+                ScriptResult result = pool.submit(program).get();
+                return new Run(result.getExitCode(), result.getOutput() + result.getErrors());
+            }
+        };
+    }
+
+    //with listener hooks that do nothing, what the hooks cost the tools built on them
+    private static final Engine instrumented = new Engine() {
+        private final ExecutionListener nothing = new ExecutionListener() {
+        };
+
+        @Override
+        public String name() {
+            return "instrumented";
+        }
+
+        @Override
+        public Run run(Program program) throws UnsupportedEncodingException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(output, false, "UTF-8");
+            ErrorReporter reporter = new ErrorReporter(out, out);
+            Interpreter interpreter = new InstrumentedInterpreter(reporter, new Output(out, StandardCharsets.UTF_8, false),
+                    program.locals, nothing);
+            try{
+                interpreter.interpretScript(program.statements);
+            } catch (StackOverflowError e){
+                interpreter.out.flush();
+                out.println("Stack overflow.");
+                reporter.hadRuntimeError = true;
+            } finally {
+                interpreter.out.flush();
+            }
+            return new Run(reporter.hadRuntimeError ? 70 : 0, output.toString("UTF-8"));
+        }
+    };
+
+    private Regressions(){
+    }
+
+    //returns the exit code
+    static int run(final String[] args) throws InterruptedException{
+        final int[] exitCode = {1};
+        Thread harness = new Thread(null, () -> {
+            try{
+                exitCode[0] = compare(args);
+            } catch (IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                System.err.println("Usage: lox --regress <programs> <results> [baseline] [runs] [threshold%]");
+                exitCode[0] = 64;
+            } catch (Exception e){
+                System.err.println("The harness failed: " + e);
+            }
+        }, "lox-regress", stackSize);
+        harness.start();
+        harness.join();
+        return exitCode[0];
+    }
+
+    private static int compare(String[] args) throws Exception{
+        Path directory = Paths.get(args[1]);
+        Path results = Paths.get(args[2]);
+        Map<String, Double> baseline = args.length >= 4 && !args[3].equals("-") ? read(Paths.get(args[3])) : new HashMap<String, Double>();
+        int runs = args.length >= 5 ? Integer.parseInt(args[4]) : defaultRuns;
+        double threshold = args.length >= 6 ? Double.parseDouble(args[5]) : defaultThreshold;
+        if(runs < 1) throw new IllegalArgumentException("There must be at least 1 run.");
+
+        List<Path> files = new ArrayList<>();
+        try(DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.lox")){
+            for(Path file : entries){
+                files.add(file);
+            }
+        }
+        files.sort(null);
+
+        boolean failed = false;
+        Map<String, Program> programs = new HashMap<>();
+        Map<String, Run> references = new HashMap<>();
+        for(Path file : files){
+            String name = file.getFileName().toString();
+            try{
+                programs.put(name, Program.compile(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+            } catch (CompileError e){
+                System.out.println(name + ": doesn't compile\n" + e.getMessage());
+                failed = true;
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        System.out.println(String.format("%-24s %-14s %12s %12s %9s", "program", "engine", "median ms", "baseline ms", "change"));
+        ScriptPool pool = new ScriptPool(1, stackSize);
+        try{
+            for(Engine engine : Arrays.asList(treeWalk, scriptPool(pool), instrumented)){
+                for(Path file : files){
+                    String name = file.getFileName().toString();
+                    Program program = programs.get(name);
+                    if(program == null) continue;
+
+                    //the reference engine's warm up run is what the others must print
+                    Run warmup = engine.run(program);
+                    if(engine == treeWalk) references.put(name, warmup);
+                    Run reference = references.get(name);
+                    long[] times = new long[runs];
+                    boolean matches = warmup.matches(reference);
+                    for(int i = 0; i < runs; i++){
+                        long start = System.nanoTime();
+                        Run run = engine.run(program);
+                        times[i] = System.nanoTime() - start;
+                        matches &= run.matches(reference);
+                    }
+                    Arrays.sort(times);
+                    double median = times[(runs - 1) / 2] / 1e6;
+                    String key = name + " " + engine.name();
+                    lines.add(key + " " + String.format(Locale.ROOT, "%.3f", median));
+
+                    Double previous = baseline.get(key);
+                    String change = previous == null ? "new" : String.format(Locale.ROOT, "%+.1f%%", (median / previous - 1) * 100);
+                    String verdict = "";
+                    if(!matches){
+                        verdict = "  OUTPUT DIFFERS from tree-walk";
+                        failed = true;
+                    } else if(previous != null && median > previous * (1 + threshold / 100)){
+                        verdict = "  REGRESSION";
+                        failed = true;
+                    }
+                    System.out.println(String.format(Locale.ROOT, "%-24s %-14s %12.3f %12s %9s%s", name, engine.name(), median,
+                            previous == null ? "-" : String.format(Locale.ROOT, "%.3f", previous), change, verdict));
+                }
+            }
+        } finally {
+            pool.close();
+        }
+
+        try(Writer writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)){
+            writer.write("# program engine median-ms, " + runs + " runs each\n");
+            for(String line : lines){
+                writer.write(line + "\n");
+            }
+        }
+        return failed ? 1 : 0;
+    }
+
+    //"program engine median" lines, # starts a comment. program names may hold blanks, so the engine and the
+    //median are the last two fields
+    private static Map<String, Double> read(Path path) throws IOException{
+        Map<String, Double> medians = new HashMap<>();
+        for(String line : Files.readAllLines(path, StandardCharsets.UTF_8)){
+            if(line.trim().isEmpty() || line.startsWith("#")) continue;
+            Matcher fields = baselineLine.matcher(line);
+            if(!fields.matches()) throw new IOException("Malformed baseline line: " + line);
+            try{
+                medians.put(fields.group(1) + " " + fields.group(2), Double.parseDouble(fields.group(3)));
+            } catch (NumberFormatException e){
+                throw new IOException("Malformed baseline line: " + line);
+            }
+        }
+        return medians;
+    }
+}
@@ -1,18 +1,26 @@
 package me.germanvanni.jlox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final Map<Expr, Integer> locals;
+    private final ErrorReporter reporter;
+    private final Stack<Map<Symbol, Boolean>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
+    //expressions resolved outside any function body, they can't run again once their statements are done
+    private final List<Expr> topLevel = new ArrayList<>();
+    //the function whose body is being resolved, and the expressions resolved in each body
+    private Stmt.Function currentDeclaration = null;
+    private final Map<Stmt.Function, List<Expr>> bodies = new HashMap<>();
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    Resolver(Map<Expr, Integer> locals, ErrorReporter reporter) {
+        this.locals = locals;
+        this.reporter = reporter;
     }
 
     private enum FunctionType{
@@ -34,6 +42,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
     }
 
+    List<Expr> takeTopLevel() {
+        List<Expr> exprs = new ArrayList<>(topLevel);
+        topLevel.clear();
+        return exprs;
+    }
+
+    //the expressions of each function body, nested functions are separate bodies
+    Map<Stmt.Function, List<Expr>> takeBodies() {
+        Map<Stmt.Function, List<Expr>> taken = new HashMap<>(bodies);
+        bodies.clear();
+        return taken;
+    }
+
     private void resolve(Stmt stmt) {
         stmt.accept(this);
     }
@@ -43,7 +64,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<String, Boolean>());
+        scopes.push(new HashMap<Symbol, Boolean>());
     }
 
     private void endScope() {
@@ -65,8 +86,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         declare(stmt.name);
         define(stmt.name);
 
-        if(stmt.superclass != null && stmt.superclass.name.lexeme.equals((stmt.name.lexeme))){
-            Lox.error(stmt.superclass.name, "A class can't inherit from itself.");
+        if(stmt.superclass != null && stmt.superclass.name.symbol == stmt.name.symbol){
+            reporter.error(stmt.superclass.name, "A class can't inherit from itself.");
         }
 
 
@@ -77,15 +98,15 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if(stmt.superclass != null){
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.peek().put(Symbol.superKeyword, true);
         }
 
         beginScope();
-        scopes.peek().put("this", true);
+        scopes.peek().put(Symbol.thisKeyword, true);
 
         for(Stmt.Function method : stmt.methods){
             FunctionType declaration = FunctionType.METHOD;
-            if (method.name.lexeme.equals("ctor")){
+            if (method.name.symbol == Symbol.ctor){
                 declaration = FunctionType.CONSTRUCTOR;
             }
             resolveFunction(method, declaration);
@@ -114,9 +135,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
         if(currentClass == ClassType.NONE){
-            Lox.error(expr.keyword, "Can't use 'super' keyword outside of a class.");
+            reporter.error(expr.keyword, "Can't use 'super' keyword outside of a class.");
         } else if (currentClass != ClassType.SUBCLASS) {
-            Lox.error(expr.keyword, "Can't use 'super' in a class without superclass.");
+            reporter.error(expr.keyword, "Can't use 'super' in a class without superclass.");
         }
 
         resolveLocal(expr, expr.keyword);
@@ -126,24 +147,24 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void declare(Token name) {
         if (scopes.isEmpty()) return;
 
-        Map<String, Boolean> scope = scopes.peek();
+        Map<Symbol, Boolean> scope = scopes.peek();
 
-        if(scope.containsKey(name.lexeme)){
-            Lox.error(name, "Variable already declared in this scope");
+        if(scope.containsKey(name.symbol)){
+            reporter.error(name, "Variable already declared in this scope");
         }
 
-        scope.put(name.lexeme, false);
+        scope.put(name.symbol, false);
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().put(name.symbol, true);
     }
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-            Lox.error(expr.name, "Can't read local variable in its own initializer.");
+        if (!scopes.isEmpty() && scopes.peek().get(expr.name.symbol) == Boolean.FALSE) {
+            reporter.error(expr.name, "Can't read local variable in its own initializer.");
         }
 
         resolveLocal(expr, expr.name);
@@ -152,8 +173,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void resolveLocal(Expr expr, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
+            if (scopes.get(i).containsKey(name.symbol)) {
+                locals.put(expr, scopes.size() - 1 - i);
+                if(currentFunction == FunctionType.NONE) topLevel.add(expr);
+                else bodies.computeIfAbsent(currentDeclaration, function -> new ArrayList<>()).add(expr);
                 return;
             }
         }
@@ -176,7 +199,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void resolveFunction(Stmt.Function function, FunctionType functionType) {
         FunctionType enclosingFunction = currentFunction;
+        Stmt.Function enclosingDeclaration = currentDeclaration;
         currentFunction = functionType;
+        currentDeclaration = function;
 
         beginScope();
         for (Token param : function.params) {
@@ -187,6 +212,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         endScope();
 
         currentFunction = enclosingFunction;
+        currentDeclaration = enclosingDeclaration;
     }
 
     @Override
@@ -213,7 +239,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (stmt.value != null) {
             if(currentFunction == FunctionType.CONSTRUCTOR){
-                Lox.error(stmt.keyword, "Can't return a value from an initializer.");
+                reporter.error(stmt.keyword, "Can't return a value from an initializer.");
             }
             resolve(stmt.value);
         }
@@ -258,6 +284,21 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        resolve(expr.value);
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
     @Override
     public Void visitGroupingExpr(Expr.Grouping expr) {
         resolve(expr.expression);
@@ -285,7 +326,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitThisExpr(Expr.This expr) {
         if(currentClass == ClassType.NONE){
-            Lox.error(expr.keyword, "Can't use 'this' outside of a class");
+            reporter.error(expr.keyword, "Can't use 'this' outside of a class");
             return null;
         }
         resolveLocal(expr, expr.keyword);
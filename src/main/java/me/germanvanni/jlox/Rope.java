@@ -0,0 +1,99 @@
+package me.germanvanni.jlox;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//the result of concatenating long strings with +. joining two parts is O(1), the characters are only
+//copied the first time the string is printed, compared or hashed, so building a string in a loop is linear
+final class Rope implements Serializable {
+    private static final long serialVersionUID = 1L;
+    //shorter results are cheaper to copy right away than to keep as a tree
+    private static final int minLength = 64;
+
+    //either the parts not joined yet or, once flattened, the String. swapped in one write so
+    //tasks sharing a rope can flatten it at the same time
+    private volatile Object value;
+    private final int length;
+
+    private static final class Parts {
+        final Object left;
+        final Object right;
+
+        Parts(Object left, Object right){
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private Rope(Object left, Object right, int length){
+        this.value = new Parts(left, right);
+        this.length = length;
+    }
+
+    static boolean isString(Object value){
+        return value instanceof String || value instanceof Rope;
+    }
+
+    //left and right are Strings or Ropes
+    static Object concat(Object left, Object right){
+        int length = length(left) + length(right);
+        if(copies(length)) return left.toString() + right.toString();
+        return new Rope(left, right, length);
+    }
+
+    //whether concat builds a result this long as a String right away
+    static boolean copies(long length){
+        return length < minLength;
+    }
+
+    static int length(Object part){
+        return part instanceof Rope ? ((Rope) part).length : ((String) part).length();
+    }
+
+    int length(){
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        Object current = value;
+        if(current instanceof String) return (String) current;
+
+        //walks the tree with an explicit stack, a string built one piece at a time is as deep as it is long
+        StringBuilder builder = new StringBuilder(length);
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(current);
+        while(!pending.isEmpty()){
+            Object part = pending.pop();
+            if(part instanceof Rope) part = ((Rope) part).value;
+
+            if(part instanceof Parts){
+                pending.push(((Parts) part).right);
+                pending.push(((Parts) part).left);
+            } else {
+                builder.append((String) part);
+            }
+        }
+
+        String flat = builder.toString();
+        value = flat;
+        return flat;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(other instanceof Rope) other = other.toString();
+        return toString().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    //snapshots hold plain strings
+    private Object writeReplace(){
+        return toString();
+    }
+}
@@ -0,0 +1,24 @@
+package me.germanvanni.jlox;
+
+//what Metrics exposes over JMX, as me.germanvanni.jlox:type=RuntimeMetrics. JMX needs it to be public
+public interface RuntimeMetricsMXBean {
+    long getEnvironments();
+
+    long getBinds();
+
+    long getInstances();
+
+    long getFieldHits();
+
+    long getMethodHits();
+
+    long getPropertyMisses();
+
+    long getReturns();
+
+    long getNumberArithmetic();
+
+    long getStringConcatenations();
+
+    long getMixedConcatenations();
+}
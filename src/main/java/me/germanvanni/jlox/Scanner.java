@@ -1,43 +1,71 @@
 package me.germanvanni.jlox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static me.germanvanni.jlox.TokenType.*;
 
 public class Scanner {
     private final String source;
+    private final ErrorReporter reporter;
     private final List<Token> tokens = new ArrayList<Token>();
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    //reused for every identifier looked up in the symbol table
+    private final SymbolTable.Lexeme probe = new SymbolTable.Lexeme();
 
-    private static final Map<String, TokenType> keywords;
+    //fixed tokens always carry the same lexeme, so we hand out shared strings instead of substrings
+    private static final String[] lexemes = new String[TokenType.values().length];
     static {
-        keywords = new HashMap<>();
-        keywords.put("and",     AND);
-        keywords.put("class",   CLASS);
-        keywords.put("else",    ELSE);
-        keywords.put("false",   FALSE);
-        keywords.put("for",     FOR);
-        keywords.put("fn",      FN);
-        keywords.put("if",      IF);
-        keywords.put("null",    NULL);
-        keywords.put("or",      OR);
-        keywords.put("is",      IS);
-        keywords.put("print",   PRINT);
-        keywords.put("return",  RETURN);
-        keywords.put("super",   SUPER);
-        keywords.put("this",    THIS);
-        keywords.put("true",    TRUE);
-        keywords.put("var",     VAR);
-        keywords.put("while",   WHILE);
-    }
-
-    Scanner(String source) {
+        lexeme(LEFT_PAREN,    "(");
+        lexeme(RIGHT_PAREN,   ")");
+        lexeme(LEFT_BRACE,    "{");
+        lexeme(RIGHT_BRACE,   "}");
+        lexeme(LEFT_BRACKET,  "[");
+        lexeme(RIGHT_BRACKET, "]");
+        lexeme(COMMA,         ",");
+        lexeme(DOT,           ".");
+        lexeme(MINUS,         "-");
+        lexeme(PLUS,          "+");
+        lexeme(COLON,         ":");
+        lexeme(SEMICOLON,     ";");
+        lexeme(SLASH,         "/");
+        lexeme(STAR,          "*");
+        lexeme(BANG,          "!");
+        lexeme(BANG_EQUAL,    "!=");
+        lexeme(EQUAL,         "=");
+        lexeme(EQUAL_EQUAL,   "==");
+        lexeme(GREATER,       ">");
+        lexeme(GREATER_EQUAL, ">=");
+        lexeme(LESS,          "<");
+        lexeme(LESS_EQUAL,    "<=");
+        lexeme(AND,           "and");
+        lexeme(CLASS,         "class");
+        lexeme(ELSE,          "else");
+        lexeme(FALSE,         "false");
+        lexeme(FOR,           "for");
+        lexeme(FN,            "fn");
+        lexeme(IF,            "if");
+        lexeme(NULL,          "null");
+        lexeme(OR,            "or");
+        lexeme(IS,            "is");
+        lexeme(PRINT,         "print");
+        lexeme(RETURN,        "return");
+        lexeme(SUPER,         "super");
+        lexeme(THIS,          "this");
+        lexeme(TRUE,          "true");
+        lexeme(VAR,           "var");
+        lexeme(WHILE,         "while");
+    }
+
+    private static void lexeme(TokenType type, String text){
+        lexemes[type.ordinal()] = text;
+    }
+
+    Scanner(String source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
     }
 
     List<Token> scanTokens() {
@@ -65,6 +93,12 @@ public class Scanner {
             case '}':
                 addToken(RIGHT_BRACE);
                 break;
+            case '[':
+                addToken(LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(RIGHT_BRACKET);
+                break;
             case ',':
                 addToken(COMMA);
                 break;
@@ -125,7 +159,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character '" + c + "'.");
+                    reporter.error(line, "Unexpected character '" + c + "'.");
                     break;
                 }
         }
@@ -150,6 +184,10 @@ public class Scanner {
         return source.charAt(current);
     }
 
+    private char peekPrevious() {
+        return source.charAt(current - 1);
+    }
+
     private char peekNext() {
         if (current + 1 >= source.length()) {
             return '\0';
@@ -158,7 +196,7 @@ public class Scanner {
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+        tokens.add(new Token(type, lexemes[type.ordinal()], null, line));
     }
 
     private void addToken(TokenType type, Object literal) {
@@ -185,15 +223,24 @@ public class Scanner {
     }
 
     private void number() {
-        while (isDigit(peek())) advance();
+        //integral literals are accumulated while scanning, only fractions go through parseDouble
+        long value = peekPrevious() - '0';
+        while (isDigit(peek())) value = value * 10 + (advance() - '0');
 
         //fractional part
         if (peek() == '.' && isDigit(peekNext())) {
             advance();// consume the '.'
+            while (isDigit(peek())) advance();
+            addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+            return;
         }
-        while (isDigit(peek())) advance();
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        //past 15 digits the long may have overflowed or stopped being exact as a double
+        if (current - start > 15) {
+            addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+            return;
+        }
+        addToken(NUMBER, (double) value);
     }
 
     private void string() {
@@ -203,7 +250,7 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unnterminated string");
+            reporter.error(line, "Unnterminated string");
             return;
         }
 
@@ -216,11 +263,70 @@ public class Scanner {
     private void identifier(){
         while(isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if(type == null) type = IDENTIFIER;
+        TokenType type = keyword();
+        switch(type){
+            case IDENTIFIER:
+                tokens.add(new Token(IDENTIFIER, SymbolTable.global.intern(probe.of(source, start, current)), line));
+                break;
+            case THIS:
+                tokens.add(new Token(THIS, Symbol.thisKeyword, line));
+                break;
+            case SUPER:
+                tokens.add(new Token(SUPER, Symbol.superKeyword, line));
+                break;
+            default:
+                addToken(type);
+        }
+    }
+
+    //recognizes keywords by their first characters and length, straight from the source
+    private TokenType keyword(){
+        switch(source.charAt(start)){
+            case 'a': return checkKeyword(1, "nd", AND);
+            case 'c': return checkKeyword(1, "lass", CLASS);
+            case 'e': return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if(current - start > 1){
+                    switch(source.charAt(start + 1)){
+                        case 'a': return checkKeyword(2, "lse", FALSE);
+                        case 'o': return checkKeyword(2, "r", FOR);
+                        case 'n': return checkKeyword(2, "", FN);
+                    }
+                }
+                break;
+            case 'i':
+                if(current - start > 1){
+                    switch(source.charAt(start + 1)){
+                        case 'f': return checkKeyword(2, "", IF);
+                        case 's': return checkKeyword(2, "", IS);
+                    }
+                }
+                break;
+            case 'n': return checkKeyword(1, "ull", NULL);
+            case 'o': return checkKeyword(1, "r", OR);
+            case 'p': return checkKeyword(1, "rint", PRINT);
+            case 'r': return checkKeyword(1, "eturn", RETURN);
+            case 's': return checkKeyword(1, "uper", SUPER);
+            case 't':
+                if(current - start > 1){
+                    switch(source.charAt(start + 1)){
+                        case 'h': return checkKeyword(2, "is", THIS);
+                        case 'r': return checkKeyword(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(1, "ar", VAR);
+            case 'w': return checkKeyword(1, "hile", WHILE);
+        }
+        return IDENTIFIER;
+    }
 
-        addToken(type);
+    private TokenType checkKeyword(int offset, String rest, TokenType type){
+        if(current - start == offset + rest.length() &&
+                source.regionMatches(start + offset, rest, 0, rest.length())){
+            return type;
+        }
+        return IDENTIFIER;
     }
 
     private void blockComment(){
@@ -0,0 +1,203 @@
+package me.germanvanni.jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//runs compiled programs as independent tasks. on Java 21+ every task gets its own virtual thread,
+//otherwise they share a bounded pool of platform threads. a task that is cancelled or runs past its
+//timeout gets interrupted, and the interpreter stops within a few loop iterations or calls. a task run
+//with Limits fails with a LimitExceededError instead when it goes over them
+public final class ScriptPool implements AutoCloseable {
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timeouts;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public ScriptPool(){
+        this(virtualThreads());
+    }
+
+    public ScriptPool(int threads){
+        this(threads, 0);
+    }
+
+    //threads with a stack of stackSize bytes, 0 for the JVM's default
+    ScriptPool(int threads, long stackSize){
+        this(platformThreads(threads, stackSize));
+    }
+
+    private ScriptPool(ExecutorService executor){
+        this.executor = executor;
+        ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(1, daemonThreads("lox-script-timeouts"));
+        //a task that finishes in time cancels its timeout, which mustn't stay queued until it would have fired
+        timeouts.setRemoveOnCancelPolicy(true);
+        this.timeouts = timeouts;
+    }
+
+    public Future<ScriptResult> submit(Program program){
+        return submit(program, Limits.none());
+    }
+
+    public Future<ScriptResult> submit(Program program, Limits limits){
+        Task task = new Task(program, limits);
+        queued.incrementAndGet();
+        executor.execute(task);
+        return task;
+    }
+
+    public Future<ScriptResult> submit(Program program, long timeout, TimeUnit unit){
+        final Task task = new Task(program, Limits.none());
+        queued.incrementAndGet();
+        executor.execute(task);
+        task.timeout = timeouts.schedule(() -> {
+            if(!task.isDone()) task.timeOut();
+        }, timeout, unit);
+        //done() may have run before the timeout was stored
+        if(task.isDone()) task.timeout.cancel(false);
+        return task;
+    }
+
+    //tasks submitted but not started yet
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    //completed with a runtime error, or an error the interpreter didn't handle
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    //waits for the submitted tasks. interrupted meanwhile, it stops waiting and keeps the interrupt flag set
+    @Override
+    public void close() {
+        executor.shutdown();
+        try{
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        } finally {
+            timeouts.shutdownNow();
+        }
+    }
+
+    private ScriptResult execute(Program program, Limits limits) throws UnsupportedEncodingException{
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Budget budget = new Budget(limits);
+        int exitCode = program.run(new PrintStream(output, false, "UTF-8"), new PrintStream(errors, true, "UTF-8"),
+                StandardCharsets.UTF_8, budget);
+        if(exitCode != 0) failed.incrementAndGet();
+        return new ScriptResult(exitCode, output.toString("UTF-8"), errors.toString("UTF-8"), budget.allocated());
+    }
+
+    private final class Task extends FutureTask<ScriptResult> {
+        //whoever flips this first takes the task out of the queue count
+        private final AtomicBoolean started;
+        private volatile boolean timedOut = false;
+        private volatile ScheduledFuture<?> timeout;
+
+        Task(Program program, Limits limits){
+            this(program, limits, new AtomicBoolean());
+        }
+
+        private Task(final Program program, final Limits limits, final AtomicBoolean started){
+            super(() -> {
+                if(started.compareAndSet(false, true)) queued.decrementAndGet();
+                running.incrementAndGet();
+                try{
+                    return execute(program, limits);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            this.started = started;
+        }
+
+        void timeOut(){
+            timedOut = true;
+            cancel(true);
+        }
+
+        @Override
+        protected void done() {
+            ScheduledFuture<?> timeout = this.timeout;
+            if(timeout != null) timeout.cancel(false);
+            if(started.compareAndSet(false, true)) queued.decrementAndGet();
+            if(isCancelled()){
+                if(timedOut) ScriptPool.this.timedOut.incrementAndGet();
+                else cancelled.incrementAndGet();
+            } else {
+                completed.incrementAndGet();
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            //a cancelled run unwinds with an exception too, that one isn't a failure
+            if(!isCancelled()) failed.incrementAndGet();
+            super.setException(t);
+        }
+    }
+
+    private static ExecutorService virtualThreads(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return platformThreads(Runtime.getRuntime().availableProcessors(), 0);
+        }
+    }
+
+    private static ExecutorService platformThreads(int threads, long stackSize){
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreads("lox-script", stackSize));
+    }
+
+    private static ThreadFactory daemonThreads(final String name){
+        return daemonThreads(name, 0);
+    }
+
+    private static ThreadFactory daemonThreads(final String name, final long stackSize){
+        return runnable -> {
+            Thread thread = new Thread(null, runnable, name, stackSize);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package me.germanvanni.jlox;
+
+//what one run of a program printed, the exit code runFile would have used and about how many bytes of
+//Lox objects it allocated
+public final class ScriptResult {
+    private final int exitCode;
+    private final String output;
+    private final String errors;
+    private final long allocatedBytes;
+
+    ScriptResult(int exitCode, String output, String errors, long allocatedBytes){
+        this.exitCode = exitCode;
+        this.output = output;
+        this.errors = errors;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
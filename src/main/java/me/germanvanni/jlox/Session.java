@@ -0,0 +1,103 @@
+package me.germanvanni.jlox;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//an interactive session: the interpreter and resolver live as long as the session does,
+//and each submission only scans, parses and resolves the new fragment
+public class Session {
+    private final Interpreter interpreter;
+    private final Resolver resolver;
+    //input of a fragment that still has open braces or parentheses
+    private final StringBuilder pending = new StringBuilder();
+    //the resolved expressions of every function body entered so far, dropped once nothing can call it
+    private final Set<Body> bodies = new HashSet<>();
+    private final ReferenceQueue<Stmt.Function> unreachable = new ReferenceQueue<>();
+
+    //held until the declaration is only weakly reachable: no function value or live code refers to it
+    private static final class Body extends WeakReference<Stmt.Function> {
+        final List<Expr> exprs;
+
+        Body(Stmt.Function declaration, List<Expr> exprs, ReferenceQueue<Stmt.Function> queue){
+            super(declaration, queue);
+            this.exprs = exprs;
+        }
+    }
+
+    public Session(){
+        this(new Interpreter());
+    }
+
+    Session(Interpreter interpreter){
+        this.interpreter = interpreter;
+        this.resolver = new Resolver(interpreter.locals, interpreter.reporter);
+    }
+
+    //returns false while the fragment is incomplete and more input is expected
+    public boolean submit(String source){
+        pending.append(source).append('\n');
+
+        List<Token> tokens = new Scanner(pending.toString(), interpreter.reporter).scanTokens();
+        if(!interpreter.reporter.hadError && isOpen(tokens)) return false;
+
+        pending.setLength(0);
+        run(tokens);
+        interpreter.reporter.hadError = false;
+        return true;
+    }
+
+    public boolean isPending(){
+        return pending.length() > 0;
+    }
+
+    private void run(List<Token> tokens){
+        Parser parser = new Parser(tokens, interpreter.reporter);
+        List<Stmt> statements = parser.parse();
+
+        if(interpreter.reporter.hadError) return;
+
+        forgetUnreachable();
+        resolver.resolve(statements);
+        //top level code runs exactly once, so its resolved distances are dropped right after;
+        //function and method bodies keep theirs as long as a closure may still run them
+        List<Expr> topLevel = resolver.takeTopLevel();
+        for(Map.Entry<Stmt.Function, List<Expr>> body : resolver.takeBodies().entrySet()){
+            bodies.add(new Body(body.getKey(), body.getValue(), unreachable));
+        }
+
+        if(!interpreter.reporter.hadError) interpreter.interpret(statements);
+        interpreter.forget(topLevel);
+    }
+
+    private void forgetUnreachable(){
+        Object reference;
+        while((reference = unreachable.poll()) != null){
+            Body body = (Body) reference;
+            bodies.remove(body);
+            interpreter.forget(body.exprs);
+        }
+    }
+
+    private static boolean isOpen(List<Token> tokens){
+        int depth = 0;
+        for(Token token : tokens){
+            switch(token.type){
+                case LEFT_PAREN:
+                case LEFT_BRACE:
+                case LEFT_BRACKET:
+                    depth++;
+                    break;
+                case RIGHT_PAREN:
+                case RIGHT_BRACE:
+                case RIGHT_BRACKET:
+                    depth--;
+                    break;
+            }
+        }
+        return depth > 0;
+    }
+}
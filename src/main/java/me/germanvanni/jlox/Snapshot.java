@@ -0,0 +1,173 @@
+package me.germanvanni.jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+//a snapshot holds whatever a prelude left in the globals (functions, classes, values) along with
+//the resolved distances of its code, so an interpreter can boot from it without running the prelude.
+//natives are not stored: they are referenced by name and bound to the new interpreter's own
+class Snapshot {
+    private static final String magic = "lox-snapshot";
+    //the classes a snapshot is made of declare a fixed serialVersionUID, so a snapshot written before one
+    //of their fields changed would still deserialize, wrongly. bump this whenever one does
+    private static final int version = 4;
+
+    //runs the prelude and writes the resulting globals, returning the exit code runFile would use
+    static int build(String preludePath, String snapshotPath) throws IOException{
+        byte[] bytes = Files.readAllBytes(Paths.get(preludePath));
+        Interpreter interpreter = new Interpreter();
+        Lox.run(interpreter, new String(bytes, Charset.defaultCharset()));
+        interpreter.out.flush();
+
+        if(interpreter.reporter.hadError) return 65;
+        if(interpreter.reporter.hadRuntimeError) return 70;
+
+        write(interpreter, Paths.get(snapshotPath));
+        return 0;
+    }
+
+    static void write(Interpreter interpreter, Path path) throws IOException{
+        //natives are recognized by the names every interpreter defines them under
+        Set<Symbol> nativeNames = new Interpreter().globals.values().keySet();
+        Map<Object, Symbol> natives = new IdentityHashMap<>();
+        for(Map.Entry<Symbol, Object> entry : interpreter.globals.values().entrySet()){
+            if(nativeNames.contains(entry.getKey()) && isNative(entry.getValue())){
+                natives.put(entry.getValue(), entry.getKey());
+            }
+        }
+        Map<Symbol, Object> values = new HashMap<>(interpreter.globals.values());
+
+        try(SnapshotOutputStream out = new SnapshotOutputStream(Files.newOutputStream(path), interpreter.globals, natives)){
+            out.writeUTF(magic);
+            out.writeInt(version);
+            out.writeObject(values);
+            out.writeObject(new HashMap<>(interpreter.locals));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Interpreter boot(Path path) throws IOException{
+        Interpreter interpreter = new Interpreter();
+
+        try(SnapshotInputStream in = new SnapshotInputStream(Files.newInputStream(path), interpreter.globals)){
+            if(!in.readUTF().equals(magic)){
+                throw new IOException("'" + path + "' is not a Lox snapshot.");
+            }
+            if(in.readInt() != version){
+                throw new IOException("Snapshot '" + path + "' was built by a different version, rebuild it.");
+            }
+            Map<Symbol, Object> values = (Map<Symbol, Object>) in.readObject();
+            Map<Expr, Integer> locals = (Map<Expr, Integer>) in.readObject();
+
+            for(Map.Entry<Symbol, Object> entry : values.entrySet()){
+                interpreter.globals.define(entry.getKey(), entry.getValue());
+            }
+            interpreter.locals.putAll(locals);
+        } catch (InvalidClassException e){
+            throw new IOException("Snapshot '" + path + "' was built by a different version, rebuild it.", e);
+        } catch (ClassNotFoundException e){
+            throw new IOException("Snapshot '" + path + "' is corrupt.", e);
+        }
+        return interpreter;
+    }
+
+    private static boolean isNative(Object value){
+        return value instanceof LoxCallable && !(value instanceof Serializable);
+    }
+
+    //stands for the globals environment of whichever interpreter boots the snapshot
+    private static final class GlobalsReference implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class NativeReference implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final Symbol name;
+
+        NativeReference(Symbol name){
+            this.name = name;
+        }
+    }
+
+    private static class SnapshotOutputStream extends ObjectOutputStream {
+        private final Environment globals;
+        private final Map<Object, Symbol> natives;
+
+        SnapshotOutputStream(OutputStream out, Environment globals, Map<Object, Symbol> natives) throws IOException{
+            super(new BufferedOutputStream(out));
+            this.globals = globals;
+            this.natives = natives;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if(obj == globals) return new GlobalsReference();
+            Symbol nativeName = natives.get(obj);
+            if(nativeName != null) return new NativeReference(nativeName);
+            return obj;
+        }
+    }
+
+    private static class SnapshotInputStream extends ObjectInputStream {
+        private final Environment globals;
+
+        SnapshotInputStream(InputStream in, Environment globals) throws IOException{
+            super(new BufferedInputStream(in));
+            this.globals = globals;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if(obj instanceof GlobalsReference) return globals;
+            if(obj instanceof NativeReference){
+                Symbol name = ((NativeReference) obj).name;
+                Object value = globals.values().get(name);
+                if(value == null) throw new IOException("Snapshot refers to unknown native '" + name + "'.");
+                return value;
+            }
+            return obj;
+        }
+
+        //a snapshot only ever contains interpreter objects and the few JDK types they are made of
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if(name.startsWith("me.germanvanni.jlox.") || name.startsWith("[Lme.germanvanni.jlox.")){
+                return super.resolveClass(desc);
+            }
+            switch(name){
+                case "java.lang.Boolean":
+                case "java.lang.Double":
+                case "java.lang.Enum":
+                case "java.lang.Integer":
+                case "java.lang.Number":
+                case "java.lang.String":
+                case "java.util.ArrayList":
+                case "java.util.Arrays$ArrayList":
+                case "java.util.HashMap":
+                case "[D":
+                case "[Ljava.lang.Object;":
+                    return super.resolveClass(desc);
+            }
+            throw new InvalidClassException(name, "not allowed in a Lox snapshot");
+        }
+    }
+}
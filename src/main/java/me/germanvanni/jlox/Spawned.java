@@ -0,0 +1,45 @@
+package me.germanvanni.jlox;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//the tasks of one run it hasn't heard back from: still running, or failed without anybody awaiting them.
+//shared by every interpreter of the run, which only ends once they have
+final class Spawned {
+    private final Set<LoxTask> tasks = ConcurrentHashMap.newKeySet();
+    //set when the run is cancelled or failed, so its tasks stop at their next loop or call
+    volatile boolean cancelled;
+
+    void add(LoxTask task){
+        tasks.add(task);
+    }
+
+    void remove(LoxTask task){
+        tasks.remove(task);
+    }
+
+    //waits for every task, tasks they spawn meanwhile included, reporting errors nobody awaited
+    void join(Interpreter interpreter){
+        while(!tasks.isEmpty()){
+            for(LoxTask task : tasks){
+                tasks.remove(task);
+                task.finish(interpreter);
+            }
+        }
+    }
+
+    //whether any task is still running
+    boolean running(){
+        for(LoxTask task : tasks){
+            if(!task.isDone()) return true;
+        }
+        return false;
+    }
+
+    void cancel(){
+        cancelled = true;
+        for(LoxTask task : tasks){
+            task.cancel();
+        }
+    }
+}
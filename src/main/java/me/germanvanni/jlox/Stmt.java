@@ -1,8 +1,13 @@
 package me.germanvanni.jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-abstract class Stmt{
+abstract class Stmt implements Serializable{
+    private static final long serialVersionUID = 1L;
+
+    //the line the statement starts on, set by the parser
+    int line;
 
  abstract <R> R accept(Visitor<R> visitor);
     interface Visitor<R> {
@@ -17,6 +22,7 @@ abstract class Stmt{
         R visitWhileStmt(While stmt);
     }
 static class If extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Expr condition;
     final Stmt thenBranch;
@@ -36,6 +42,7 @@ static class If extends Stmt {
 }
 
 static class Block extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final List<Stmt> statements;
 
@@ -51,6 +58,7 @@ static class Block extends Stmt {
 }
 
 static class Class extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Token name;
     final Expr.Variable superclass;
@@ -70,6 +78,7 @@ static class Class extends Stmt {
 }
 
 static class Expression extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Expr expression;
 
@@ -85,6 +94,7 @@ static class Expression extends Stmt {
 }
 
 static class Function extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Token name;
     final List<Token> params;
@@ -104,6 +114,7 @@ static class Function extends Stmt {
 }
 
 static class Print extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Expr expression;
 
@@ -119,6 +130,7 @@ static class Print extends Stmt {
 }
 
 static class Return extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Token keyword;
     final Expr value;
@@ -136,6 +148,7 @@ static class Return extends Stmt {
 }
 
 static class Var extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Token name;
     final Expr initializer;
@@ -153,6 +166,7 @@ static class Var extends Stmt {
 }
 
 static class While extends Stmt {
+    private static final long serialVersionUID = 1L;
 
     final Expr condition;
     final Stmt body;
@@ -0,0 +1,192 @@
+package me.germanvanni.jlox;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+//substring(s, start, end), indexOf(s, part), split(s, separator), charCode(s, index), fromCharCode(code),
+//parseNumber(s), formatNumber(n, decimals) and str(value). len(s) lives with the array natives.
+//indices count UTF-16 units like Java does, and indexOf returns -1 when part isn't there
+final class StringNatives {
+    //past the smallest double's 324 decimals more only adds zeros
+    private static final int maxDecimals = 340;
+
+    private StringNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("substring", 3, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        String string = string(arguments.get(0), "substring");
+                        int start = index(arguments.get(1), "substring");
+                        int end = index(arguments.get(2), "substring");
+                        if(start > end || end > string.length()){
+                            throw new NativeError("substring() range " + start + ".." + end
+                                    + " is out of bounds for length " + string.length() + ".");
+                        }
+                        charge(interpreter, end - start);
+                        return string.substring(start, end);
+                    }
+                },
+                new NativeFunction("indexOf", 2, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        String string = string(arguments.get(0), "indexOf");
+                        return (double) string.indexOf(string(arguments.get(1), "indexOf"));
+                    }
+                },
+                new NativeFunction("split", 2, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return split(interpreter, string(arguments.get(0), "split"), string(arguments.get(1), "split"));
+                    }
+                },
+                new NativeFunction("charCode", 2, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        String string = string(arguments.get(0), "charCode");
+                        int index = index(arguments.get(1), "charCode");
+                        if(index >= string.length()){
+                            throw new NativeError("charCode() index " + index + " is out of bounds for length "
+                                    + string.length() + ".");
+                        }
+                        return (double) string.charAt(index);
+                    }
+                },
+                new NativeFunction("fromCharCode", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        int code = index(arguments.get(0), "fromCharCode");
+                        if(code > Character.MAX_VALUE) throw new NativeError("fromCharCode() expects a code up to 65535.");
+                        charge(interpreter, 1);
+                        return String.valueOf((char) code);
+                    }
+                },
+                new NativeFunction("parseNumber", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return parseNumber(string(arguments.get(0), "parseNumber"));
+                    }
+                },
+                new NativeFunction("formatNumber", 2, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        Object number = arguments.get(0);
+                        if(!(number instanceof Double) || Double.isNaN((double) number) || Double.isInfinite((double) number)){
+                            throw new NativeError("formatNumber() expects a finite number.");
+                        }
+                        int decimals = index(arguments.get(1), "formatNumber");
+                        if(decimals > maxDecimals){
+                            throw new NativeError("formatNumber() expects at most " + maxDecimals + " decimals.");
+                        }
+                        //rounds the number as printed, so 2.675 rounds up to 2.68 the way people expect
+                        //rather than down like the binary double just under it would
+                        BigDecimal value = BigDecimal.valueOf((double) number);
+                        //the whole digits, the decimals, a sign, a point and a digit rounding may carry into
+                        charge(interpreter, Math.max(1, value.precision() - value.scale()) + decimals + 3);
+                        return value.setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+                    }
+                },
+                new NativeFunction("str", 1, true) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        charge(interpreter, printedLength(arguments.get(0)));
+                        return Interpreter.stringify(arguments.get(0));
+                    }
+                });
+    }
+
+    //walks the string with indexOf, an empty separator splits it into single characters. the parts are
+    //counted first, so the run pays for them before they are made
+    private static LoxArray split(Interpreter interpreter, String string, String separator){
+        int count = separator.isEmpty() ? string.length() : occurrences(string, separator) + 1;
+        long characters = separator.isEmpty() ? string.length() : string.length() - (long) (count - 1) * separator.length();
+        interpreter.allocate(Budget.arrayBytes + (Budget.elementBytes + Budget.stringBytes) * count + 2L * characters);
+
+        LoxArray parts = new LoxArray(0);
+        if(separator.isEmpty()){
+            for(int i = 0; i < string.length(); i++){
+                parts.push(String.valueOf(string.charAt(i)));
+            }
+            return parts;
+        }
+
+        int start = 0;
+        int next;
+        while((next = string.indexOf(separator, start)) >= 0){
+            parts.push(string.substring(start, next));
+            start = next + separator.length();
+        }
+        parts.push(string.substring(start));
+        return parts;
+    }
+
+    //the same numbers the scanner accepts, with an optional sign and surrounding blanks. null otherwise
+    private static Object parseNumber(String string){
+        String text = string.trim();
+        int start = text.startsWith("-") || text.startsWith("+") ? 1 : 0;
+        int dot = -1;
+        for(int i = start; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(c == '.' && dot < 0 && i > start) dot = i;
+            else if(c < '0' || c > '9') return null;
+        }
+        if(text.length() == start || dot == text.length() - 1) return null;
+        return Double.parseDouble(text);
+    }
+
+    private static int occurrences(String string, String separator){
+        int count = 0;
+        for(int next = string.indexOf(separator); next >= 0; next = string.indexOf(separator, next + separator.length())){
+            count++;
+        }
+        return count;
+    }
+
+    //charges for a new string of this length, before it is built
+    private static void charge(Interpreter interpreter, long length){
+        interpreter.allocate(Budget.stringBytes + 2L * length);
+    }
+
+    //the length of what str() makes of value, without making it
+    private static long printedLength(Object value){
+        if(value instanceof Double) return Interpreter.stringify((double) value).length();
+        if(Rope.isString(value)) return Rope.length(value);
+        if(value instanceof LoxArray){
+            LoxArray array = (LoxArray) value;
+            long length = 2 + 2L * Math.max(0, array.size() - 1);
+            for(int i = 0; i < array.size(); i++){
+                length += printedLength(array.get(i));
+            }
+            return length;
+        }
+        if(value instanceof LoxMap){
+            List<Object> contents = new ArrayList<>();
+            ((LoxMap) value).contents(contents);
+            //": " in every entry and ", " between them
+            long length = 2 + 2L * Math.max(0, contents.size() - 1);
+            for(Object part : contents){
+                length += printedLength(part);
+            }
+            return length;
+        }
+        //null, booleans, functions, classes and instances print short names
+        return Interpreter.stringify(value).length();
+    }
+
+    private static String string(Object value, String function){
+        if(!Rope.isString(value)) throw new NativeError(function + "() expects a string.");
+        return value.toString();
+    }
+
+    private static int index(Object value, String function){
+        if(!(value instanceof Double) || (double) value < 0 || (double) value != Math.floor((double) value)
+                || (double) value > Integer.MAX_VALUE){
+            throw new NativeError(function + "() expects a whole number, at least 0.");
+        }
+        return (int) (double) value;
+    }
+}
@@ -0,0 +1,39 @@
+package me.germanvanni.jlox;
+
+import java.io.Serializable;
+
+//a unique, interned name: two symbols are equal only if they are the same object,
+//so maps keyed on them never have to compare characters
+final class Symbol implements Serializable {
+    private static final long serialVersionUID = 1L;
+    static final Symbol thisKeyword = of("this");
+    static final Symbol superKeyword = of("super");
+    static final Symbol ctor = of("ctor");
+
+    final String name;
+    private final int hash;
+
+    Symbol(String name, int hash){
+        this.name = name;
+        this.hash = hash;
+    }
+
+    static Symbol of(String name){
+        return SymbolTable.global.intern(name, 0, name.length());
+    }
+
+    //symbols read back from a snapshot must be the ones this process interned
+    private Object readResolve(){
+        return of(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
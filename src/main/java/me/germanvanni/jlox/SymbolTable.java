@@ -0,0 +1,93 @@
+package me.germanvanni.jlox;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+//interns identifier lexemes straight out of the source text, so every occurrence
+//of a name maps to one Symbol and later stages can compare names by identity.
+//names are held weakly: once nothing uses one any more it is dropped, so a long running process
+//compiling many programs doesn't keep all their names. lookups don't lock
+final class SymbolTable {
+    static final SymbolTable global = new SymbolTable();
+
+    private final ConcurrentHashMap<Lexeme, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Symbol> collected = new ReferenceQueue<>();
+
+    Symbol intern(String source, int start, int end){
+        return intern(new Lexeme().of(source, start, end));
+    }
+
+    //a name seen before is found through the caller's probe without allocating, only a new one is copied
+    Symbol intern(Lexeme probe){
+        Entry entry = entries.get(probe);
+        Symbol symbol = entry == null ? null : entry.get();
+        if(symbol != null) return symbol;
+
+        purge();
+        String name = probe.source.substring(probe.start, probe.end);
+        Lexeme key = new Lexeme().of(name, 0, name.length());
+        Symbol created = new Symbol(name, probe.hash);
+        Entry fresh = new Entry(created, key, collected);
+        while(true){
+            Entry existing = entries.putIfAbsent(key, fresh);
+            if(existing == null) return created;
+            //another thread interned it first, unless what it left was already collected
+            Symbol other = existing.get();
+            if(other != null) return other;
+            entries.remove(key, existing);
+        }
+    }
+
+    private void purge(){
+        Object reference;
+        while((reference = collected.poll()) != null){
+            Entry entry = (Entry) reference;
+            entries.remove(entry.key, entry);
+        }
+    }
+
+    private static final class Entry extends WeakReference<Symbol> {
+        final Lexeme key;
+
+        Entry(Symbol symbol, Lexeme key, ReferenceQueue<Symbol> queue){
+            super(symbol, queue);
+            this.key = key;
+        }
+    }
+
+    //a range of a source string, equal to any range holding the same characters. a scanner reuses one
+    //to look names up, the keys in the table are never changed
+    static final class Lexeme {
+        String source;
+        int start;
+        int end;
+        int hash;
+
+        Lexeme of(String source, int start, int end){
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            int hash = 0;
+            for(int i = start; i < end; i++){
+                hash = 31 * hash + source.charAt(i);
+            }
+            //fold the high bits in since tables only use the low ones
+            this.hash = hash ^ (hash >>> 16);
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Lexeme)) return false;
+            Lexeme lexeme = (Lexeme) other;
+            return hash == lexeme.hash && end - start == lexeme.end - lexeme.start
+                    && source.regionMatches(start, lexeme.source, lexeme.start, end - start);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
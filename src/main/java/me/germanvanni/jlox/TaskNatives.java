@@ -0,0 +1,89 @@
+package me.germanvanni.jlox;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+//spawn(fn), await(task), channel(capacity), send(channel, value) and recv(channel).
+//
+//sharing rules between tasks:
+// - globals are shared, each read or write of a global is atomic
+// - so are the variables a spawned function closes over
+// - instances belong to the task that created them; sending one through a channel or
+//   returning it from a task hands it (and the instances in its fields) to the receiver
+final class TaskNatives {
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private TaskNatives(){
+    }
+
+    static void define(Environment globals){
+        NativeFunction.define(globals,
+                new NativeFunction("spawn", 1) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        Object callee = arguments.get(0);
+                        if(!(callee instanceof LoxCallable) || ((LoxCallable) callee).arity() != 0){
+                            throw new NativeError("spawn() expects a function without parameters.");
+                        }
+                        return spawn(interpreter, (LoxCallable) callee);
+                    }
+                },
+                new NativeFunction("await", 1) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return task(arguments.get(0), "await").await(interpreter.budget, interpreter.line());
+                    }
+                },
+                new NativeFunction("channel", 1) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        Object capacity = arguments.get(0);
+                        if(!(capacity instanceof Double) || (double) capacity < 1 || (double) capacity != Math.floor((double) capacity)){
+                            throw new NativeError("channel() expects a positive whole capacity.");
+                        }
+                        return new LoxChannel((int) (double) capacity);
+                    }
+                },
+                new NativeFunction("send", 2) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        channel(arguments.get(0), "send").send(arguments.get(1), interpreter.budget, interpreter.line());
+                        return null;
+                    }
+                },
+                new NativeFunction("recv", 1) {
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return channel(arguments.get(0), "recv").recv(interpreter.budget, interpreter.line());
+                    }
+                });
+    }
+
+    private static LoxTask spawn(Interpreter interpreter, final LoxCallable callee){
+        if(callee instanceof LoxFunction) ((LoxFunction) callee).shareClosure();
+
+        final Interpreter worker = interpreter.fork();
+        LoxTask task = new LoxTask(interpreter.spawned, () -> {
+            try{
+                Object result = worker.callFromNative(callee, Collections.<Object>emptyList());
+                Owned.release(result);
+                return result;
+            } finally {
+                worker.returnAllowance();
+            }
+        });
+        task.start(pool);
+        return task;
+    }
+
+    private static LoxTask task(Object value, String function){
+        if(value instanceof LoxTask) return (LoxTask) value;
+        throw new NativeError(function + "() expects a task.");
+    }
+
+    private static LoxChannel channel(Object value, String function){
+        if(value instanceof LoxChannel) return (LoxChannel) value;
+        throw new NativeError(function + "() expects a channel.");
+    }
+}
@@ -1,16 +1,30 @@
 package me.germanvanni.jlox;
 
-public class Token {
+import java.io.Serializable;
+
+public class Token implements Serializable {
+    private static final long serialVersionUID = 1L;
     final TokenType type;
     final String lexeme;
     final Object literal;
     final int line;
+    //only set for tokens that name something: identifiers, 'this' and 'super'
+    final Symbol symbol;
 
     Token(TokenType type, String lexeme, Object literal, int line){
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = null;
+    }
+
+    Token(TokenType type, Symbol symbol, int line){
+        this.type = type;
+        this.lexeme = symbol.name;
+        this.literal = null;
+        this.line = line;
+        this.symbol = symbol;
     }
 
     public String toString(){
@@ -0,0 +1,41 @@
+package me.germanvanni.jlox;
+
+import java.io.PrintStream;
+
+//lox --trace: prints every call with its result and every runtime error, indented by call depth
+class Tracer implements ExecutionListener {
+    private final PrintStream out;
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    Tracer(PrintStream out){
+        this.out = out;
+    }
+
+    @Override
+    public void callEntered(LoxCallable callee, Token paren) {
+        print(depth.get()[0]++, "[line " + paren.line + "] " + callee);
+    }
+
+    @Override
+    public void callExited(LoxCallable callee, Token paren, Object result) {
+        print(--depth.get()[0], "[line " + paren.line + "] " + callee + " = " + Interpreter.stringify(result));
+    }
+
+    @Override
+    public void callFailed(LoxCallable callee, Token paren, RuntimeException error) {
+        print(--depth.get()[0], "[line " + paren.line + "] " + callee + " failed");
+    }
+
+    @Override
+    public void runtimeError(RuntimeError error) {
+        print(0, "[line " + error.token.line + "] error: " + error.getMessage());
+    }
+
+    private void print(int indent, String line){
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < indent; i++){
+            builder.append("  ");
+        }
+        out.println(builder.append(line));
+    }
+}
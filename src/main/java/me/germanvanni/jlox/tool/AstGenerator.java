@@ -3,6 +3,7 @@ package me.germanvanni.jlox.tool;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class AstGenerator {
@@ -25,8 +26,10 @@ public class AstGenerator {
                 "Logical  : Expr left, Token operator, Expr right",
                 "Set      : Expr object, Token name, Expr value",
                 "This     : Token keyword",
-                "Super    : Token keyword, Token method"
-        ));
+                "Super    : Token keyword, Token method",
+                "Index    : Expr object, Token bracket, Expr index",
+                "IndexSet : Expr object, Token bracket, Expr index, Expr value"
+        ), Collections.<String>emptyList());
 
         defineAst(outputDirectory, "Stmt", Arrays.asList(
                 "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
@@ -38,18 +41,31 @@ public class AstGenerator {
                 "Return     : Token keyword, Expr value",
                 "Var        : Token name, Expr initializer",
                 "While      : Expr condition, Stmt body"
+        ), Arrays.asList(
+                "//the line the statement starts on, set by the parser",
+                "int line;"
         ));
     }
 
-    private static void defineAst(String outputDirectory, String baseName, List<String> types) throws IOException{
+    private static void defineAst(String outputDirectory, String baseName, List<String> types, List<String> baseFields) throws IOException{
         String path = outputDirectory + "/" + baseName + ".java";
         PrintWriter writer = new PrintWriter(path, "UTF-8");
 
         writer.println("package me.germanvanni.jlox;");
         writer.println();
+        writer.println("import java.io.Serializable;");
         writer.println("import java.util.List;");
         writer.println();
-        writer.println("abstract class " + baseName + "{");
+        //serializable so resolved trees can be stored in interpreter snapshots
+        writer.println("abstract class " + baseName + " implements Serializable{");
+        //fixed, snapshots are versioned by Snapshot.version instead of by the compiled classes
+        writer.println("    private static final long serialVersionUID = 1L;");
+
+        //fields every node has
+        if(!baseFields.isEmpty()) writer.println();
+        for(String field : baseFields){
+            writer.println("    " + field);
+        }
 
         //base accept()
         writer.println();
@@ -71,6 +87,7 @@ public class AstGenerator {
 
     private static void defineType(PrintWriter writer, String baseName, String className, String fieldList){
         writer.println("static class " + className + " extends " + baseName + " {");
+        writer.println("    private static final long serialVersionUID = 1L;");
         writer.println();
         String[] fields = fieldList.split(", ");
         //fields declaration
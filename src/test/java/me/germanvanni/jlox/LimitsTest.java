@@ -0,0 +1,103 @@
+package me.germanvanni.jlox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LimitsTest {
+    private static final Limits halfASecond = Limits.none().withTimeout(500, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void aRunWithinItsLimitsEndsNormally() {
+        Limits limits = Limits.none().withFuel(10000).withMaxCallDepth(100).withTimeout(10, TimeUnit.SECONDS);
+        assertEquals(0, Program.compile("fn f(n){ if(n == 0) return 0; return f(n - 1); } f(50);").run(discard(), discard(), limits));
+    }
+
+    @Test
+    public void loopsRunOutOfFuel() {
+        LimitExceededError e = exceeded("var i = 0;\nwhile(true){\n    i = i + 1;\n}", Limits.none().withFuel(100000));
+        assertEquals(Limits.Kind.FUEL, e.getLimit());
+        assertEquals(2, e.getLine());
+    }
+
+    @Test
+    public void fuelIsSharedWithTasks() {
+        LimitExceededError e = exceeded("fn f(){ while(true){} }\nawait(spawn(f));", Limits.none().withFuel(100000));
+        assertEquals(Limits.Kind.FUEL, e.getLimit());
+    }
+
+    @Test
+    public void fuelIsSpentByCallbacksOfNatives() {
+        LimitExceededError e = exceeded("fn g(x){ while(true){} }\nmap(array(3), g);", Limits.none().withFuel(5000));
+        assertEquals(Limits.Kind.FUEL, e.getLimit());
+    }
+
+    @Test
+    public void recursionStopsAtTheMaxCallDepth() {
+        LimitExceededError e = exceeded("fn f(n){\n    return f(n + 1);\n}\nf(0);", Limits.none().withMaxCallDepth(50));
+        assertEquals(Limits.Kind.CALL_DEPTH, e.getLimit());
+        assertEquals(2, e.getLine());
+    }
+
+    @Test(timeout = 10000)
+    public void aLoopStopsAtTheDeadline() {
+        assertEquals(Limits.Kind.DEADLINE, exceeded("while(true){}", halfASecond).getLimit());
+    }
+
+    @Test(timeout = 10000)
+    public void theDeadlineAppliesWhileBlockedInRecv() {
+        LimitExceededError e = exceeded("var c = channel(1);\nrecv(c);", halfASecond);
+        assertEquals(Limits.Kind.DEADLINE, e.getLimit());
+        assertEquals(2, e.getLine());
+    }
+
+    @Test(timeout = 10000)
+    public void theDeadlineAppliesWhileBlockedInSend() {
+        LimitExceededError e = exceeded("var c = channel(1);\nsend(c, 1);\nsend(c, 2);", halfASecond);
+        assertEquals(Limits.Kind.DEADLINE, e.getLimit());
+        assertEquals(3, e.getLine());
+    }
+
+    @Test(timeout = 10000)
+    public void theDeadlineAppliesWhileBlockedInAwait() {
+        LimitExceededError e = exceeded("fn f(){ recv(channel(1)); }\nvar task = spawn(f);\nawait(task);", halfASecond);
+        assertEquals(Limits.Kind.DEADLINE, e.getLimit());
+    }
+
+    @Test(timeout = 10000)
+    public void theDeadlineAppliesToTasksNobodyAwaits() {
+        assertEquals(Limits.Kind.DEADLINE, exceeded("fn f(){ recv(channel(1)); }\nspawn(f);", halfASecond).getLimit());
+    }
+
+    @Test(timeout = 10000)
+    public void pooledRunsReportTheLimitTheyExceeded() throws InterruptedException {
+        try(ScriptPool pool = new ScriptPool(1)){
+            pool.submit(Program.compile("recv(channel(1));"), halfASecond).get();
+            fail("the run didn't stop at its deadline");
+        } catch (ExecutionException e){
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof LimitExceededError);
+            assertEquals(Limits.Kind.DEADLINE, ((LimitExceededError) e.getCause()).getLimit());
+        }
+    }
+
+    private static LimitExceededError exceeded(String source, Limits limits) {
+        Program program = Program.compile(source);
+        try{
+            program.run(discard(), discard(), limits);
+        } catch (LimitExceededError e){
+            return e;
+        }
+        throw new AssertionError("the run stayed within its limits");
+    }
+
+    private static PrintStream discard() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,135 @@
+package me.germanvanni.jlox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemoryLimitTest {
+    private String output;
+    private String errors;
+
+    @Test
+    public void aLimitUnderOneChunkLetsSmallRunsThrough() {
+        assertEquals(0, run("var s = \"a\" + \"b\";\nprint len(s);", 10000));
+        assertEquals("2\n", output);
+    }
+
+    @Test
+    public void allocationsMayUseUpTheLimitExactly() {
+        Interpreter interpreter = interpreter(1000);
+        interpreter.allocate(600);
+        interpreter.allocate(400);
+        try{
+            interpreter.allocate(1);
+            fail("allocated past the limit");
+        } catch (NativeError e){
+            assertEquals("Execution allocated more than its 1000 bytes of memory.", e.getMessage());
+        }
+        assertEquals(1000, interpreter.budget.allocated());
+    }
+
+    @Test
+    public void aRefillNearTheCapTakesOnlyWhatIsLeft() {
+        Interpreter interpreter = interpreter(Budget.memoryChunk + 100);
+        interpreter.allocate(Budget.memoryChunk);
+        assertEquals(Budget.memoryChunk + 100, interpreter.budget.allocated());
+        interpreter.allocate(100);
+        try{
+            interpreter.allocate(1);
+            fail("allocated past the limit");
+        } catch (NativeError expected){
+        }
+    }
+
+    @Test
+    public void anotherThreadStillGetsWhatIsLeftOneAllocationAtATime() {
+        Interpreter first = interpreter(2 * Budget.memoryChunk);
+        Interpreter second = first.fork();
+        //takes a chunk on top of what it needs
+        first.allocate(1);
+        //only the rest fits, without a chunk on top
+        second.allocate(Budget.memoryChunk - 1);
+        assertEquals(2 * Budget.memoryChunk, first.budget.allocated());
+
+        first.returnAllowance();
+        second.returnAllowance();
+        assertEquals(Budget.memoryChunk, first.budget.allocated());
+    }
+
+    @Test
+    public void aRunOverTheLimitFailsAtTheAllocatingLine() {
+        assertEquals(70, run("var parts = array(0);\nwhile(true) push(parts, \"x\" + len(parts));", 100000));
+        assertEquals("Execution allocated more than its 100000 bytes of memory.\n[line 2]\n", errors);
+    }
+
+    @Test
+    public void doublingAStringIsCaughtBeforeItIsBuilt() {
+        assertEquals(70, run("var s = \"a\";\nfor(var i = 0; i < 40; i = i + 1) s = s + s;", 1000000));
+        assertTrue(errors, errors.startsWith("Execution allocated more than its 1000000 bytes of memory."));
+    }
+
+    @Test
+    public void appendingInALoopIsChargedForWhatIsAppended() {
+        assertEquals(0, run("var s = \"\";\nwhile(len(s) < 10000) s = s + \"x\";\nprint len(s);", 1000000));
+        assertEquals("10000\n", output);
+    }
+
+    @Test
+    public void stringNativesChargeBeforeBuilding() {
+        String big = "var s = \"0123456789\";\nfor(var i = 0; i < 10; i = i + 1) s = s + s;\n";
+        //building s costs about 23KB, a copy of it 20KB more
+        long limit = 35000;
+        assertEquals(0, run(big + "print len(s);", limit));
+        assertEquals(70, run(big + "substring(s, 0, len(s));", limit));
+        assertTrue(errors, errors.contains("[line 3]"));
+        assertEquals(70, run(big + "split(s, \"\");", limit));
+        assertTrue(errors, errors.contains("[line 3]"));
+        assertEquals(70, run(big + "str(s);", limit));
+        assertTrue(errors, errors.contains("[line 3]"));
+        assertEquals(70, run("formatNumber(1, 340);", 500));
+    }
+
+    @Test
+    public void pooledRunsReportWhatTheyAllocated() throws InterruptedException, ExecutionException {
+        try(ScriptPool pool = new ScriptPool(1)){
+            ScriptResult result = pool.submit(Program.compile("var a = array(1000);"), Limits.none().withMaxMemory(1000000)).get();
+            assertEquals(0, result.getExitCode());
+            assertTrue(String.valueOf(result.getAllocatedBytes()), result.getAllocatedBytes() >= Budget.arrayBytes + 1000 * Budget.elementBytes);
+            assertTrue(String.valueOf(result.getAllocatedBytes()), result.getAllocatedBytes() < Budget.memoryChunk);
+        }
+    }
+
+    private static Interpreter interpreter(long maxMemory) {
+        Interpreter interpreter = new Interpreter(new ErrorReporter(discard(), discard()), new Output(discard(), StandardCharsets.UTF_8, false),
+                new HashMap<Expr, Integer>());
+        interpreter.budget = new Budget(Limits.none().withMaxMemory(maxMemory));
+        return interpreter;
+    }
+
+    private int run(String source, long maxMemory) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try{
+            int exitCode = Program.compile(source).run(new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"),
+                    StandardCharsets.UTF_8, Limits.none().withMaxMemory(maxMemory));
+            output = out.toString("UTF-8");
+            errors = err.toString("UTF-8");
+            return exitCode;
+        } catch (UnsupportedEncodingException e){
+            throw new AssertionError(e);
+        }
+    }
+
+    private static PrintStream discard() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+}
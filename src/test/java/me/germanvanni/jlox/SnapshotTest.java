@@ -0,0 +1,131 @@
+package me.germanvanni.jlox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //a booted interpreter prints to System.out like the one lox --boot uses
+    private final ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    private PrintStream systemOut;
+
+    @Before
+    public void captureOutput() throws IOException {
+        systemOut = System.out;
+        System.setOut(new PrintStream(printed, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreOutput() {
+        System.setOut(systemOut);
+    }
+
+    @Test
+    public void bootRestoresWhatThePreludeDefined() throws IOException {
+        Path snapshot = build(
+                "class Counter {\n" +
+                "    next(){ this.count = this.count + 1; return this.count; }\n" +
+                "}\n" +
+                "var counter = Counter();\n" +
+                "counter.count = 41;\n" +
+                "fn twice(f){ return f() + f(); }\n" +
+                "var greeting = \"hello\";\n");
+
+        Interpreter interpreter = Snapshot.boot(snapshot);
+        Lox.run(interpreter, "print counter.next(); print twice(clock) > 0; print greeting + \" again\";");
+        interpreter.out.flush();
+
+        assertFalse(interpreter.reporter.hadError || interpreter.reporter.hadRuntimeError);
+        assertEquals("42\ntrue\nhello again\n", printed.toString("UTF-8"));
+    }
+
+    @Test
+    public void closuresKeepTheirVariablesAcrossABoot() throws IOException {
+        Path snapshot = build(
+                "fn makeCounter(){\n" +
+                "    var i = 0;\n" +
+                "    fn count(){ i = i + 1; return i; }\n" +
+                "    return count;\n" +
+                "}\n" +
+                "var count = makeCounter();\n" +
+                "count();\n");
+
+        Interpreter interpreter = Snapshot.boot(snapshot);
+        Lox.run(interpreter, "print count(); print count();");
+        interpreter.out.flush();
+
+        assertEquals("2\n3\n", printed.toString("UTF-8"));
+    }
+
+    @Test
+    public void nativesAreBoundToTheBootedInterpreter() throws IOException {
+        Path snapshot = build("var l = len;\n");
+
+        Interpreter interpreter = Snapshot.boot(snapshot);
+        Lox.run(interpreter, "print l(\"four\"); print l == len;");
+        interpreter.out.flush();
+
+        assertEquals("4\ntrue\n", printed.toString("UTF-8"));
+    }
+
+    @Test
+    public void aSnapshotOfAnotherVersionIsRejected() throws IOException {
+        Path snapshot = folder.newFile("old.snapshot").toPath();
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))){
+            out.writeShort(0xaced);
+            out.writeShort(5);
+            //a block holding the magic and a version no build writes
+            byte[] magic = "lox-snapshot".getBytes(StandardCharsets.UTF_8);
+            out.writeByte(0x77);
+            out.writeByte(2 + magic.length + 4);
+            out.writeShort(magic.length);
+            out.write(magic);
+            out.writeInt(-1);
+        }
+
+        try{
+            Snapshot.boot(snapshot);
+            fail("booted a snapshot of another version");
+        } catch (IOException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("different version"));
+        }
+    }
+
+    @Test
+    public void aFileThatIsNoSnapshotIsRejected() throws IOException {
+        Path notSnapshot = folder.newFile("script.lox").toPath();
+        Files.write(notSnapshot, "print 1;".getBytes(StandardCharsets.UTF_8));
+
+        try{
+            Snapshot.boot(notSnapshot);
+            fail("booted a file that is no snapshot");
+        } catch (IOException expected){
+        }
+    }
+
+    private Path build(String prelude) throws IOException {
+        Path source = folder.newFile("prelude.lox").toPath();
+        Files.write(source, prelude.getBytes(StandardCharsets.UTF_8));
+        Path snapshot = folder.getRoot().toPath().resolve("prelude.snapshot");
+        assertEquals(0, Snapshot.build(source.toString(), snapshot.toString()));
+        return snapshot;
+    }
+}
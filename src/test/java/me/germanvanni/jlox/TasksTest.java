@@ -0,0 +1,106 @@
+package me.germanvanni.jlox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TasksTest {
+    private String output;
+    private String errors;
+
+    @Test
+    public void awaitReturnsWhatTheTaskReturned() {
+        assertEquals(0, run(
+                "fn work(){ var sum = 0; for(var i = 1; i <= 100; i = i + 1) sum = sum + i; return sum; }\n" +
+                "var tasks = array(4);\n" +
+                "for(var i = 0; i < 4; i = i + 1) tasks[i] = spawn(work);\n" +
+                "var total = 0;\n" +
+                "for(var i = 0; i < 4; i = i + 1) total = total + await(tasks[i]);\n" +
+                "print total;"));
+        assertEquals("20200\n", output);
+    }
+
+    @Test
+    public void anErrorInATaskIsRaisedWhereItIsAwaited() {
+        assertEquals(70, run(
+                "fn broken(){\n" +
+                "    return null.field;\n" +
+                "}\n" +
+                "var task = spawn(broken);\n" +
+                "print \"before\";\n" +
+                "await(task);\n" +
+                "print \"after\";"));
+        assertEquals("before\n", output);
+        assertEquals("Only instances have properties\n[line 2]\n", errors);
+    }
+
+    @Test
+    public void theScriptWaitsForTasksNobodyAwaited() {
+        assertEquals(0, run(
+                "var done = channel(1);\n" +
+                "fn late(){ recv(done); print \"late\"; }\n" +
+                "spawn(late);\n" +
+                "print \"early\";\n" +
+                "send(done, true);"));
+        assertEquals("early\nlate\n", output);
+    }
+
+    @Test
+    public void theErrorOfATaskNobodyAwaitedFailsTheScript() {
+        assertEquals(70, run(
+                "fn broken(){ return 1 + null; }\n" +
+                "spawn(broken);\n" +
+                "print \"done\";"));
+        assertEquals("done\n", output);
+        assertEquals("Operands must be two numbers or two strings\n[line 1]\n", errors);
+    }
+
+    @Test(timeout = 10000)
+    public void aFailingScriptCancelsItsTasks() {
+        assertEquals(70, run(
+                "var never = channel(1);\n" +
+                "fn waiting(){ recv(never); print \"woke up\"; }\n" +
+                "fn spinning(){ while(true){} }\n" +
+                "spawn(waiting);\n" +
+                "spawn(spinning);\n" +
+                "null.field;"));
+        assertEquals("", output);
+    }
+
+    @Test
+    public void tasksHandValuesOverThroughChannels() {
+        assertEquals(0, run(
+                "var numbers = channel(2);\n" +
+                "fn produce(){ for(var i = 1; i <= 10; i = i + 1) send(numbers, i); send(numbers, null); }\n" +
+                "fn consume(){ var sum = 0; for(var n = recv(numbers); n != null; n = recv(numbers)) sum = sum + n; return sum; }\n" +
+                "spawn(produce);\n" +
+                "print await(spawn(consume));"));
+        assertEquals("55\n", output);
+    }
+
+    @Test
+    public void spawnExpectsAFunctionWithoutParameters() {
+        assertEquals(70, run("fn f(a){ return a; }\nspawn(f);"));
+        assertTrue(errors, errors.contains("spawn() expects a function without parameters."));
+    }
+
+    private int run(String source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try{
+            int exitCode = Program.compile(source).run(new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"),
+                    StandardCharsets.UTF_8, Limits.none());
+            output = out.toString("UTF-8");
+            errors = err.toString("UTF-8");
+            return exitCode;
+        } catch (UnsupportedEncodingException e){
+            throw new AssertionError(e);
+        }
+    }
+}